@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package bench;
+
+import game.BattleEstimator;
+import gui.CombatStrategyPanel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import util.C;
+
+/**
+ * Battle.doCombat() benchmark. Fights on copies of the GameFixture units
+ * thru BattleEstimator, so the game is not changed. TRIALS is one
+ * BattleEstimator work chunk, so the battles are fought on the benchmark
+ * thread.
+ *
+ * @author joulupunikki
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CombatBench {
+
+    private static final int TRIALS = 64;
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public BattleEstimator.Estimate doCombat(GameFixture f) {
+        return new BattleEstimator(f.game.getBattle()).estimate(C.GROUND_COMBAT,
+                CombatStrategyPanel.Strategy.NORMAL, f.attacker, f.defender, TRIALS, GameFixture.SEED);
+    }
+}
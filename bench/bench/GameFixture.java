@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package bench;
+
+import dat.EfsIni;
+import galaxyreader.Unit;
+import game.BattleEstimator;
+import game.Game;
+import game.Hex;
+import game.PlanetGrid;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import phoenix.Headless;
+import util.C;
+import util.FN;
+import util.PathFind;
+
+/**
+ * Shared benchmark state, a game set up as Headless does, with all factions
+ * under computer control. Game.beginGame() has processed the first faction
+ * turn, no further turns are played. The galaxy is read from the file named
+ * by system property phoenix.bench.galaxy, default is GALAXY.GAL of the EFS
+ * installation. The property may also be a GalaxyGenerator spec, eg.
+ * "generated:planets=200,stacks=40,seed=1", to measure how the benchmarks
+ * scale with galaxy size. Since the game depends on EFS.INI and the EFS data
+ * files the benchmarks are run from the EFS directory, as the game is.
+ *
+ * @author joulupunikki
+ */
+@State(Scope.Benchmark)
+public class GameFixture {
+
+    public static final String GALAXY_PROPERTY = "phoenix.bench.galaxy";
+    public static final long SEED = 0x5eedL;
+    /**
+     * Hex distance of path search source and destination.
+     */
+    public static final int PATH_LENGTH = 12;
+
+    public String galaxy_file_name;
+    public Properties efs_ini;
+    public Properties phoenix_ini;
+    public CommandLine cli_opts;
+    public Game game;
+    // a planetary stack, its planet and a reachable hex PATH_LENGTH hexes away
+    public int planet;
+    public Hex source;
+    public Hex destination;
+    public int move_type;
+    // ground combat units of two different factions
+    public List<Unit> attacker;
+    public List<Unit> defender;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        System.setProperty("java.awt.headless", "true");
+        galaxy_file_name = System.getProperty(GALAXY_PROPERTY, FN.S_GALAXY_GAL);
+        cli_opts = Headless.parseCLI(new String[]{"--" + C.OPT_ENABLE_AI});
+        efs_ini = EfsIni.readEFSINI();
+        phoenix_ini = EfsIni.readPhoenixIni();
+        game = newGame();
+        findStacks();
+        if (source == null || attacker == null) {
+            throw new IllegalStateException("Galaxy " + galaxy_file_name + " has no suitable planetary stacks");
+        }
+    }
+
+    /**
+     * @return a new game from the fixture galaxy, set up and begun, with the
+     * first faction turn processed
+     */
+    public Game newGame() {
+        return Headless.runGame(galaxy_file_name, SEED, 0, efs_ini, phoenix_ini, cli_opts);
+    }
+
+    /**
+     * Find the first planetary stack with a ground unit which has a reachable
+     * hex PATH_LENGTH hexes away, and the first two stacks of different
+     * factions with ground combat units.
+     */
+    private void findStacks() {
+        for (int p = 0; p < game.getPlanets().size(); p++) {
+            PlanetGrid grid = game.getPlanetGrid(p);
+            for (int i = 0; i < C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS; i++) {
+                Hex hex = grid.getHex(i);
+                List<Unit> stack = hex.getStack();
+                if (stack.isEmpty()) {
+                    continue;
+                }
+                if (source == null) {
+                    findPath(p, grid, hex);
+                }
+                List<Unit> combat = BattleEstimator.groundCombatUnits(stack);
+                if (combat.isEmpty()) {
+                    continue;
+                }
+                if (attacker == null) {
+                    attacker = combat;
+                } else if (defender == null && combat.get(0).owner != attacker.get(0).owner) {
+                    defender = combat;
+                }
+                if (source != null && defender != null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void findPath(int p, PlanetGrid grid, Hex hex) {
+        Unit unit = hex.getStack().get(0);
+        C.MoveType type = unit.type_data.move_type;
+        if (type == C.MoveType.SPACE || type == C.MoveType.JUMP) {
+            return;
+        }
+        // PathFind.findPath() searches for the selected units of the current planet
+        for (Unit u : hex.getStack()) {
+            u.setSelected(u == unit);
+        }
+        game.setCurrentPlanetNr(p);
+        for (int i = 0; i < C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS; i++) {
+            Hex dest = grid.getHex(i);
+            if (PathFind.hexDistance(hex.getX(), hex.getY(), dest.getX(), dest.getY()) == PATH_LENGTH
+                    && PathFind.findPath(game, grid, dest, hex) != null) {
+                planet = p;
+                source = hex;
+                destination = dest;
+                move_type = type.ordinal();
+                return;
+            }
+        }
+        unit.setSelected(false);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package bench;
+
+import galaxyreader.Galaxy;
+import game.Game;
+import game.Snapshot;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading benchmarks, the galaxy file and in memory save/load of the
+ * GameFixture game.
+ *
+ * @author joulupunikki
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBench {
+
+    // the saved fixture game, for load()
+    private byte[] saved;
+
+    @Setup(Level.Trial)
+    public void setUp(GameFixture f) throws IOException {
+        saved = save(f);
+    }
+
+    @Benchmark
+    public Galaxy loadGalaxy(GameFixture f) {
+        return Galaxy.loadGalaxy(f.galaxy_file_name);
+    }
+
+    @Benchmark
+    public byte[] save(GameFixture f) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Snapshot.write(f.game, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Game load() throws IOException, ClassNotFoundException {
+        return Snapshot.read(new ByteArrayInputStream(saved));
+    }
+}
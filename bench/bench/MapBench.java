@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package bench;
+
+import game.Hex;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.PathFind;
+import util.Util;
+
+/**
+ * Planet map benchmarks, path finding, spotting and hex radius queries on the
+ * stack found by GameFixture.
+ *
+ * @author joulupunikki
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapBench {
+
+    @Param({"2", "8"})
+    public int radius;
+
+    /**
+     * Move costs of the selected units and a search per move type.
+     */
+    @Benchmark
+    public LinkedList<Hex> findPath(GameFixture f) {
+        return PathFind.findPath(f.game, f.game.getPlanetGrid(f.planet), f.destination, f.source);
+    }
+
+    /**
+     * A single search with the move costs set by GameFixture.
+     */
+    @Benchmark
+    public LinkedList<Hex> shortestPath(GameFixture f) {
+        return PathFind.shortestPath(f.game.getPlanetGrid(f.planet), f.source, f.destination, f.move_type);
+    }
+
+    @Benchmark
+    public Hex spotProc(GameFixture f) {
+        f.game.getHexProc().spotProc(f.source, f.source.getStack());
+        return f.source;
+    }
+
+    @Benchmark
+    public Set<Hex> hexesWithinRadius(GameFixture f) {
+        return Util.getHexesWithinRadiusOf(f.source, radius, null);
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package bench;
+
+import game.Game;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.C;
+
+/**
+ * Whole turn benchmarks. These change the game, so each iteration times one
+ * call on a fresh game and setting up the game is not timed.
+ *
+ * @author joulupunikki
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TurnBench {
+
+    @State(Scope.Thread)
+    public static class FreshGame {
+
+        public Game game;
+
+        @Setup(Level.Iteration)
+        public void setUp(GameFixture f) {
+            game = f.newGame();
+        }
+    }
+
+    /**
+     * Economy.updateEconomy() of every faction, the economy part of one year.
+     */
+    @Benchmark
+    public Game updateEconomy(FreshGame g) {
+        for (int i = 0; i < C.NR_FACTIONS; i++) {
+            g.game.getEconomy().updateEconomy(i);
+        }
+        return g.game;
+    }
+
+    /**
+     * One full year, Game.endTurn() of every faction. With no human players
+     * each call is one end turn housekeeping and Game.advanceTurn(), AI
+     * included.
+     */
+    @Benchmark
+    public Game turnCycle(FreshGame g) {
+        for (int i = 0; i < C.NR_FACTIONS; i++) {
+            g.game.endTurn();
+        }
+        return g.game;
+    }
+}
@@ -42,10 +42,12 @@ import gui.ResolveContract;
 import java.awt.Point;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -430,11 +432,12 @@ public abstract class AI implements Serializable {
             }
         }
         // sort
+        Comp.UnitCIdx unit_cidx = new Comp.UnitCIdx(game);
         units.sort(Comp.unit_xy);
-        units.sort(Comp.unit_cidx);
+        units.sort(unit_cidx);
         units.sort(Comp.unit_pidx);
         enemy_units.sort(Comp.unit_xy);
-        enemy_units.sort(Comp.unit_cidx);
+        enemy_units.sort(unit_cidx);
         enemy_units.sort(Comp.unit_pidx);
         // group units
         for (Unit unit : units) {
@@ -476,11 +479,12 @@ public abstract class AI implements Serializable {
                 }
             }
         }
+        Comp.CityCIdx city_cidx = new Comp.CityCIdx(game);
         structures.sort(Comp.city_xy);
-        structures.sort(Comp.city_cidx);
+        structures.sort(city_cidx);
         structures.sort(Comp.city_pidx);
         enemy_structures.sort(Comp.city_xy);
-        enemy_structures.sort(Comp.city_cidx);
+        enemy_structures.sort(city_cidx);
         enemy_structures.sort(Comp.city_pidx);
 
         for (Structure s : enemy_structures) {
@@ -573,6 +577,35 @@ public abstract class AI implements Serializable {
         }
     }
 
+    /**
+     * The most restrictive move type of units of stack on tile_set, so that a
+     * target reachable with it is reachable by the whole stack, as the paths
+     * of PathFind.findPath() must be. A move type is more restrictive the
+     * more terrain types it cannot enter, and of equally restricted move
+     * types the one with the higher total terrain move cost.
+     *
+     * @param stack
+     * @param terr_cost
+     * @param tile_set
+     * @return
+     */
+    private static C.MoveType restrictiveMoveType(List<Unit> stack, double[][][] terr_cost, int tile_set) {
+        C.MoveType ret_val = stack.get(0).move_type;
+        double max_cost = Double.NEGATIVE_INFINITY;
+        for (Unit unit : stack) {
+            double cost = 0;
+            for (double[][] terrain : terr_cost) {
+                double c = terrain[tile_set][unit.move_type.ordinal()];
+                cost += c == 0 ? C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS : c;
+            }
+            if (cost > max_cost) {
+                max_cost = cost;
+                ret_val = unit.move_type;
+            }
+        }
+        return ret_val;
+    }
+
     /**
      * Mid level ground conquer method, handles conquests on one continent.
      *
@@ -594,27 +627,43 @@ public abstract class AI implements Serializable {
         long time = System.nanoTime();
         PlanetGrid pg = game.getPlanetGrid(p_idx);
         LinkedHashSet<Hex> targets = getTargets(p_idx, c_idx, map);
+        double[][][] terr_cost = game.getTerrCost();
+        int tile_set = game.getPlanet(p_idx).tile_set_type;
+        Map<List<Unit>, C.MoveType> stack_move_types = new IdentityHashMap<>();
+        for (List<Unit> stack : stacks) {
+            stack_move_types.put(stack, restrictiveMoveType(stack, terr_cost, tile_set));
+        }
         while (!targets.isEmpty() && !stacks.isEmpty()) {
             Hex h = null;
             List<Unit> s = null;
             int dist = Integer.MAX_VALUE;
             String s_dists = "";
-            for (Hex target : targets) {
+            // nearest stack/target pair by move cost, one sweep per move type
+            Unit lead = stacks.iterator().next().get(0);
+            PathFind.setMoveCosts(pg, terr_cost, tile_set, 0, lead.owner, lead.prev_owner, null);
+            for (C.MoveType move_type : C.MoveType.values()) {
+                List<List<Unit>> group = new ArrayList<>();
+                List<Hex> sources = new ArrayList<>();
                 for (List<Unit> stack : stacks) {
-                    int tmp = pg.getIntraContHexDist(target, map[stack.get(0).x][stack.get(0).y]);
-                    if (tmp == Byte.MIN_VALUE) { // for pathological continents
-                        tmp = Integer.MAX_VALUE;
-                    }
-                    if (tmp < dist) {
-                        h = target;
-                        s = stack;
-//                        if (s.equals(stack)) {
-//                            System.exit(0);
-//                        }
-                        dist = tmp;
-                        s_dists += "s:" + stack.get(0).x + "," + stack.get(0).y + " t:" + target.getX() + "," + target.getY() + " ";
+                    if (stack_move_types.get(stack) == move_type) {
+                        group.add(stack);
+                        sources.add(map[stack.get(0).x][stack.get(0).y]);
                     }
                 }
+                if (group.isEmpty()) {
+                    continue;
+                }
+                PathFind.Nearest nearest = PathFind.nearestTarget(pg, sources, targets, move_type.ordinal());
+                if (nearest != null && nearest.dist < dist) {
+                    h = nearest.target;
+                    s = group.get(nearest.source);
+                    dist = nearest.dist;
+                    s_dists += "s:" + s.get(0).x + "," + s.get(0).y + " t:" + h.getX() + "," + h.getY() + " ";
+                }
+            }
+            if (h == null) {
+                logger.debug("     no reachable targets");
+                break;
             }
             logger.debug("     dist " + dist + " " + s_dists);
             if (!targets.remove(h)) {
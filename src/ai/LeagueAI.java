@@ -34,6 +34,7 @@ import game.Hex;
 import java.util.LinkedList;
 import java.util.List;
 import util.C;
+import util.TurnProfiler;
 import util.Util;
 
 /**
@@ -147,7 +148,9 @@ public class LeagueAI extends AI {
 
     @Override
     public void doTurn() {
+        long time = TurnProfiler.start();
         findAssets(C.LEAGUE);
+        TurnProfiler.end(TurnProfiler.Span.AI_FIND_ASSETS, time);
         considerPeaceOffers();
         restockAgoras();
         //logSuper(C.NEUTRAL, "Start");
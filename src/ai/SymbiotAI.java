@@ -35,6 +35,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import util.C;
 import util.RingCounter;
+import util.TurnProfiler;
 import util.Util;
 
 /**
@@ -135,21 +136,29 @@ public class SymbiotAI extends AI {
         try {
             logSuper(C.SYMBIOT, "Start");
             // list stacks, cities, own, enemies
+            long time = TurnProfiler.start();
             findAssets(C.SYMBIOT);
+            TurnProfiler.end(TurnProfiler.Span.AI_FIND_ASSETS, time);
             // symbiots are no retreat, no surrender
             for (Unit unit : units) {
                 unit.loyalty = SYMBIOT_LOYALTY;
             }
             // if enemy cities on same continent as own units, conquer
+            time = TurnProfiler.start();
             conquerContinents(C.SYMBIOT);
+            TurnProfiler.end(TurnProfiler.Span.AI_CONQUER_CONTINENTS, time);
             // if no enemy cities known, send warships to closest unmapped planets
+            time = TurnProfiler.start();
             createTaskForceScouts();
             moveTaskForceScouts();
+            TurnProfiler.end(TurnProfiler.Span.AI_TASK_FORCE_SCOUTS, time);
             /* find ground units with no targets available, find available transports
              assign ground units to transports, set task force destination, start moving task force
              */
             createTaskForces();
+            time = TurnProfiler.start();
             moveTaskForces();
+            TurnProfiler.end(TurnProfiler.Span.AI_MOVE_TASK_FORCES, time);
             // queue more units to build if necessary
             getRealForceCounts();
             buildUnits();
@@ -40,7 +40,6 @@ import java.util.LinkedList;
 import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import state.SU;
 import util.C;
 import util.Util;
 
@@ -378,7 +377,7 @@ public class TaskForce extends TaskForceSuper implements Serializable {
         while (!pts_queue.isEmpty() && !Util.getSelectedUnits(game.getSelectedStack()).isEmpty()) {
             Hex pts_hex = pts_queue.remove(0);
             //TODO spy PTS units should be able to fire, eg. ballistic submarines in Hyperion ?
-            if (!SU.byzIICombatOK(pts_hex.getStack(), false)) {
+            if (!game.getRegency().isByzIICombatOK(pts_hex.getStack())) {
                 continue;
             }
             // since we are landing, do not try to bomb landing hex
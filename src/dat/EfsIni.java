@@ -209,11 +209,12 @@ public class EfsIni implements Serializable {
     }
 
     /**
-     * Read EFS.INI as a Properties object.
+     * Read EFS.INI as a Properties object. Synchronized since a shared
+     * temporary file is used.
      *
      * @return Properties object
      */
-    public static Properties readEFSINI() {
+    public static synchronized Properties readEFSINI() {
         Properties efs_ini = new Properties();
         convertToProperties(FN.S_EFS_INI, FN.S_EFS_INI_TMP);
 
@@ -121,11 +121,12 @@ public class Prod implements Serializable {
     }
 
     /**
-     * Reads and returns the whole production table from PROD.DAT *
+     * Reads and returns the whole production table from PROD.DAT.
+     * Synchronized since the line buffer s is static.
      *
      * @param game Needed to access the resource names
      */
-    public static Prod[] readProdDat(Game game) {
+    public static synchronized Prod[] readProdDat(Game game) {
 
         Prod[] ret_val = new Prod[C.PROD_CITIES];
 
@@ -29,6 +29,7 @@ package galaxyreader;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
@@ -72,30 +73,40 @@ public class Galaxy implements Serializable {
      * @throws IOException
      */
     public Galaxy(FileChannel fc) throws Exception {
+        this(GalaxyReader.mapFile(fc));
+    }
+
+    /**
+     * Creates a galaxy object from a galaxy file in buf. Decodes the file with
+     * relative reads starting at the current position of buf.
+     *
+     * @param buf little endian buffer over the galaxy.gal file.
+     * @throws Exception
+     */
+    public Galaxy(ByteBuffer buf) throws Exception {
 //        C.print();
-        Counter count = new Counter();
 
-        version = GalaxyReader.readInt(fc, count.getSet(4));
+        version = buf.getInt();
 
-        units_in_file = GalaxyReader.readInt(fc, count.getSet(4));
+        units_in_file = buf.getInt();
 
         map_tiles = new int[C.STAR_MAP_HEIGHT][C.STAR_MAP_WIDTH];
 
         for (int i = 0; i < C.STAR_MAP_HEIGHT; i++) {
             for (int j = 0; j < C.STAR_MAP_WIDTH; j++) {
 
-                map_tiles[i][j] = GalaxyReader.readInt(fc, count.getSet(4));
+                map_tiles[i][j] = buf.getInt();
 
             }
         }
         //count.getSet(2);
-        short section = GalaxyReader.readShort(fc, count.getSet(2));
+        short section = buf.getShort();
         int index = 0;
 
         planets = new LinkedList<>();
         while (section != C.END_OF_SECTION) {
-            planets.add(new Planet(fc, count, this, index++));
-            section = GalaxyReader.readShort(fc, count.getSet(2));
+            planets.add(new Planet(buf, this, index++));
+            section = buf.getShort();
 
             if (index > C.MAX_PLANETS) {
                 throw new Exception("Error reading galaxy file, too many planets: " + index);
@@ -114,13 +125,13 @@ public class Galaxy implements Serializable {
         }
 
         index = 0;
-        section = GalaxyReader.readShort(fc, count.getSet(2));
+        section = buf.getShort();
         jump_gates = new LinkedList<>();
         while (section != C.END_OF_SECTION) {
 
-            jump_gates.add(new JumpGate(fc, count));
+            jump_gates.add(new JumpGate(buf));
 
-            section = GalaxyReader.readShort(fc, count.getSet(2));
+            section = buf.getShort();
 
             if (index > C.MAX_JUMP_GATES) {
                 throw new Exception("Error reading galaxy file, too many jump gates: " + index);
@@ -130,13 +141,13 @@ public class Galaxy implements Serializable {
 
         }
 
-        section = GalaxyReader.readShort(fc, count.getSet(2));
+        section = buf.getShort();
         units = new LinkedList<>();
         index = 0;
         while (section != C.END_OF_SECTION) {
-            units.add(new Unit(fc, count));
+            units.add(new Unit(buf));
 
-            section = GalaxyReader.readShort(fc, count.getSet(2));
+            section = buf.getShort();
 
             if (index > C.MAX_UNITS) {
                 throw new Exception("Error reading galaxy file, too many units: " + index);
@@ -150,13 +161,13 @@ public class Galaxy implements Serializable {
 //            e.print();
 //          
 //        }
-        section = GalaxyReader.readShort(fc, count.getSet(2));
+        section = buf.getShort();
         structures = new LinkedList<>();
         index = 0;
         while (section != C.END_OF_SECTION) {
-            structures.add(new Structure(fc, count));
+            structures.add(new Structure(buf));
 
-            section = GalaxyReader.readShort(fc, count.getSet(2));
+            section = buf.getShort();
 
             if (index > C.MAX_STRUCTURES) {
                 throw new Exception("Error reading galaxy file, too many structures: " + index);
@@ -213,9 +224,25 @@ public class Galaxy implements Serializable {
         }
     }
 
+    /**
+     * Load a galaxy file, or generate a galaxy if filename is a
+     * GalaxyGenerator spec.
+     *
+     * @param filename
+     * @return
+     */
     public static Galaxy loadGalaxy(String filename) {
 
         Galaxy galaxy = null;
+        if (GalaxyGenerator.isSpec(filename)) {
+            try {
+                galaxy = GalaxyGenerator.generate(filename);
+            } catch (Exception e) {
+                Util.logEx(null, e);
+                CrashReporter.showCrashReport(e);
+            }
+            return galaxy;
+        }
         Path path = FileSystems.getDefault().getPath(filename);
         try (FileChannel fc = (FileChannel.open(path))) {
 
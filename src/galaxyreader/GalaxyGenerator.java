@@ -0,0 +1,795 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package galaxyreader;
+
+import dat.UnitType;
+import game.Hex;
+import game.PlanetGrid;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import util.C;
+import util.Util;
+
+/**
+ * Generates synthetic galaxies for scale testing. The galaxy is encoded in the
+ * GALAXY.GAL file format and decoded with Galaxy(ByteBuffer), so a generated
+ * galaxy is exactly what the game would get from a galaxy file. Everything is
+ * derived from the seed of the Spec, the same Spec always gives the same
+ * galaxy.
+ * <p>
+ * Galaxy.loadGalaxy() generates a galaxy when given a spec string instead of a
+ * file name, eg. "generated:planets=200,factions=7,stacks=40,seed=1", so the
+ * headless runner and the benchmarks can use generated galaxies with their
+ * galaxy options. main() writes a generated galaxy into a file, for the GUI.
+ * <p>
+ * Factions with home worlds are the houses, the League and the Church, in
+ * faction order. Unit types are drawn from UNIT.DAT, so the EFS data files
+ * must be available as for any game.
+ *
+ * @author joulupunikki
+ */
+public class GalaxyGenerator {
+
+    public static final String PREFIX = "generated:";
+    // galaxy file version, 961024 or later has no extra planet ints
+    private static final int VERSION = 961025;
+    private static final int FLAG_ON_PLANET = 0x01;
+    // raw planet map terrain values, see Planet.resolveTerrainType()
+    private static final int T_OCEAN = 0x000;
+    private static final int T_GRASS = 0x001;
+    private static final int T_ARID_GRASS = 0x002;
+    private static final int T_DESERT = 0x003;
+    private static final int T_ICE = 0x004;
+    private static final int T_TUNDRA = 0x005;
+    private static final int T_HILL = 0x207;
+    private static final int T_MOUNTAIN = 0x206;
+    private static final int[] LAND_TERRAIN = {T_GRASS, T_ARID_GRASS, T_DESERT, T_ICE, T_TUNDRA, T_HILL, T_MOUNTAIN};
+    // LAND_TERRAIN weights of tile sets
+    private static final int[][] TERRAIN_WEIGHTS = new int[C.TILE_SETS][];
+
+    static {
+        TERRAIN_WEIGHTS[C.NORMAL_TILE_SET] = new int[]{60, 15, 5, 0, 0, 12, 8};
+        TERRAIN_WEIGHTS[C.MEGACITY_TILE_SET] = TERRAIN_WEIGHTS[C.NORMAL_TILE_SET];
+        TERRAIN_WEIGHTS[C.FROZEN_TILE_SET] = new int[]{0, 0, 0, 25, 50, 15, 10};
+        TERRAIN_WEIGHTS[C.JUNGLE_TILE_SET] = new int[]{70, 5, 0, 0, 0, 15, 10};
+        TERRAIN_WEIGHTS[C.BARREN_TILE_SET] = new int[]{0, 35, 45, 0, 0, 12, 8};
+    }
+    private static final int[] TILE_SETS = {C.NORMAL_TILE_SET, C.FROZEN_TILE_SET, C.JUNGLE_TILE_SET, C.BARREN_TILE_SET};
+    // home city type of houses, League and Church
+    private static final int[] HOME_CITY = {C.PALACE, C.PALACE, C.PALACE, C.PALACE, C.PALACE, C.AGORA, C.CATHEDRAL};
+    private static final int[] CITY_TYPES = {C.FORT, C.STARPORT, C.FACTORY, C.FARM, C.WELL, C.MINE, C.CHEMICALS,
+        C.UNIVERSITY, C.HOSPITAL, C.LAB};
+    private static final int[] RESOURCE_TYPES = {C.TRACE, C.GEMS, C.EXOTICA, C.FERTILE, C.METAL, C.ENERGY};
+    private static final int HEXES = C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS;
+    // placement tries per stack or city before giving up on a crowded galaxy
+    private static final int TRIES = 1000;
+    // stacks are placed within this distance of a city of their owner
+    private static final int STACK_RADIUS = 2;
+
+    /**
+     * Jump gate network shapes. All are connected.
+     */
+    public enum Topology {
+        /**
+         * Planets in a loop, ordered by angle around the galaxy center.
+         */
+        RING,
+        /**
+         * Each planet connected to its nearest already connected planet.
+         */
+        TREE,
+        /**
+         * TREE plus a gate from each planet to its nearest unconnected
+         * neighbour.
+         */
+        MESH,
+        /**
+         * Every planet connected to planet 0.
+         */
+        HUB
+    }
+
+    /**
+     * Parameters of a generated galaxy. Parsed from and printed as
+     * "generated:key=value,key=value", omitted keys keep their defaults.
+     */
+    public static class Spec {
+
+        public int planets = 60;
+        // continents per planet
+        public int continents = 3;
+        // percent of the planet map which is land
+        public int land = 40;
+        // factions with a home world, houses first, then League and Church
+        public int factions = 7;
+        // cities per faction, not counting the home city
+        public int cities = 8;
+        // planetary stacks per faction
+        public int stacks = 20;
+        // space stacks per faction
+        public int fleets = 5;
+        // units per stack
+        public int units = 6;
+        // resources per planet
+        public int resources = 6;
+        public Topology gates = Topology.MESH;
+        public long seed = 1;
+
+        public static Spec parse(String spec) {
+            Spec ret_val = new Spec();
+            String s = spec.startsWith(PREFIX) ? spec.substring(PREFIX.length()) : spec;
+            for (String pair : s.split(",")) {
+                if (pair.trim().isEmpty()) {
+                    continue;
+                }
+                String[] kv = pair.split("=", 2);
+                if (kv.length != 2) {
+                    throw new IllegalArgumentException("Bad galaxy spec entry \"" + pair + "\" in " + spec);
+                }
+                String value = kv[1].trim();
+                switch (kv[0].trim()) {
+                    case "planets":
+                        ret_val.planets = Integer.parseInt(value);
+                        break;
+                    case "continents":
+                        ret_val.continents = Integer.parseInt(value);
+                        break;
+                    case "land":
+                        ret_val.land = Integer.parseInt(value);
+                        break;
+                    case "factions":
+                        ret_val.factions = Integer.parseInt(value);
+                        break;
+                    case "cities":
+                        ret_val.cities = Integer.parseInt(value);
+                        break;
+                    case "stacks":
+                        ret_val.stacks = Integer.parseInt(value);
+                        break;
+                    case "fleets":
+                        ret_val.fleets = Integer.parseInt(value);
+                        break;
+                    case "units":
+                        ret_val.units = Integer.parseInt(value);
+                        break;
+                    case "resources":
+                        ret_val.resources = Integer.parseInt(value);
+                        break;
+                    case "gates":
+                        ret_val.gates = Topology.valueOf(value.toUpperCase());
+                        break;
+                    case "seed":
+                        ret_val.seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown galaxy spec key \"" + kv[0] + "\" in " + spec);
+                }
+            }
+            ret_val.validate();
+            return ret_val;
+        }
+
+        /**
+         * Check the spec against the limits of the galaxy file reader and the
+         * game.
+         *
+         * @throws IllegalArgumentException
+         */
+        public void validate() {
+            // the game starts with planet 14 as current planet
+            check(planets >= 15 && planets <= Math.min(C.MAX_PLANETS, maxPlanets()), "planets", 15,
+                    Math.min(C.MAX_PLANETS, maxPlanets()));
+            check(continents >= 1 && continents <= 20, "continents", 1, 20);
+            check(land >= 1 && land <= 90, "land", 1, 90);
+            check(factions >= 1 && factions <= HOME_CITY.length, "factions", 1, HOME_CITY.length);
+            check(cities >= 0 && stacks >= 0 && fleets >= 0 && resources >= 0, "cities, stacks, fleets, resources", 0,
+                    Integer.MAX_VALUE);
+            check(units >= 1 && units <= C.STACK_SIZE, "units", 1, C.STACK_SIZE);
+            long unit_count = (long) factions * (stacks + fleets) * units;
+            if (unit_count > C.MAX_UNITS) {
+                throw new IllegalArgumentException("Too many units " + unit_count + ", max " + C.MAX_UNITS);
+            }
+            long structure_count = (long) factions * (cities + 1) + (long) planets * resources;
+            if (structure_count > C.MAX_STRUCTURES) {
+                throw new IllegalArgumentException("Too many structures " + structure_count + ", max " + C.MAX_STRUCTURES);
+            }
+        }
+
+        private static void check(boolean ok, String key, int min, int max) {
+            if (!ok) {
+                throw new IllegalArgumentException("Galaxy spec " + key + " must be in " + min + "-" + max);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return PREFIX + "planets=" + planets + ",continents=" + continents + ",land=" + land
+                    + ",factions=" + factions + ",cities=" + cities + ",stacks=" + stacks + ",fleets=" + fleets
+                    + ",units=" + units + ",resources=" + resources + ",gates=" + gates.name().toLowerCase()
+                    + ",seed=" + seed;
+        }
+    }
+
+    /**
+     * @param name galaxy file name or spec
+     * @return true iff name is a generated galaxy spec
+     */
+    public static boolean isSpec(String name) {
+        return name.startsWith(PREFIX);
+    }
+
+    /**
+     * Write a generated galaxy into a galaxy file.
+     *
+     * @param args spec and output file name
+     * @throws IOException
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.out.println("Usage: GalaxyGenerator " + new Spec() + " <galaxy file>");
+            return;
+        }
+        Spec spec = Spec.parse(args[0]);
+        ByteBuffer buf = new GalaxyGenerator(spec, UnitType.readUnitDat()).encode();
+        try (FileChannel fc = FileChannel.open(FileSystems.getDefault().getPath(args[1]),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                fc.write(buf);
+            }
+        }
+        System.out.println("Wrote " + spec + " to " + args[1]);
+    }
+
+    /**
+     * Generate the galaxy of spec.
+     *
+     * @param spec generated galaxy spec string, see Spec
+     * @return
+     * @throws Exception
+     */
+    public static Galaxy generate(String spec) throws Exception {
+        return new Galaxy(new GalaxyGenerator(Spec.parse(spec), UnitType.readUnitDat()).encode());
+    }
+
+    private final Spec spec;
+    private final SplittableRandom random;
+    // planet map hex neighbours, shared by all planets
+    private final PlanetGrid topology = new PlanetGrid();
+    private final int[] ground_types;
+    private final int[] space_types;
+    // generated galaxy
+    private final int[][] star_xy;
+    private final int[] tile_set;
+    private final int[][] terrain;
+    private final List<int[]> gates = new ArrayList<>();
+    private final List<int[]> units = new ArrayList<>();
+    private final List<int[]> structures = new ArrayList<>();
+    // placement bookkeeping, owner of stacks and cities in hex or -1,
+    // units in hex, structure in hex and space units per planet and faction
+    private final int[][] hex_owner;
+    private final int[][] hex_units;
+    private final boolean[][] hex_structure;
+    private final int[][] space_units;
+
+    /**
+     * @param spec
+     * @param unit_types contents of UNIT.DAT, combat units of t_lvl 0 are
+     * used
+     */
+    public GalaxyGenerator(Spec spec, UnitType[][] unit_types) {
+        spec.validate();
+        this.spec = spec;
+        random = new SplittableRandom(spec.seed);
+        List<Integer> ground = new ArrayList<>();
+        List<Integer> space = new ArrayList<>();
+        for (int i = 0; i < unit_types.length; i++) {
+            UnitType type = unit_types[i][0];
+            if (type == null || type.non_combat != 0) {
+                continue;
+            }
+            switch (type.move_type) {
+                case FOOT:
+                case WHEEL:
+                case TREAD:
+                case HOVER:
+                case CRAWLER:
+                    ground.add(i);
+                    break;
+                case SPACE:
+                    space.add(i);
+                    break;
+                default:
+                    break;
+            }
+        }
+        ground_types = ground.stream().mapToInt(Integer::intValue).toArray();
+        space_types = space.stream().mapToInt(Integer::intValue).toArray();
+        star_xy = new int[spec.planets][];
+        tile_set = new int[spec.planets];
+        terrain = new int[spec.planets][HEXES];
+        hex_owner = new int[spec.planets][HEXES];
+        hex_units = new int[spec.planets][HEXES];
+        hex_structure = new boolean[spec.planets][HEXES];
+        space_units = new int[spec.planets][C.NR_FACTIONS];
+        for (int[] owners : hex_owner) {
+            Arrays.fill(owners, -1);
+        }
+        generate();
+    }
+
+    private void generate() {
+        placePlanets();
+        for (int p = 0; p < spec.planets; p++) {
+            tile_set[p] = TILE_SETS[random.nextInt(TILE_SETS.length)];
+            growContinents(p);
+        }
+        connectPlanets();
+        List<List<int[]>> cities = placeCities();
+        for (int f = 0; f < spec.factions; f++) {
+            for (int i = 0; i < spec.stacks; i++) {
+                placeStack(f, cities.get(f));
+            }
+            for (int i = 0; i < spec.fleets; i++) {
+                placeFleet(f, cities.get(f));
+            }
+        }
+        for (int p = 0; p < spec.planets; p++) {
+            for (int i = 0; i < spec.resources; i++) {
+                int hex = freeHex(p, C.NEUTRAL);
+                if (hex >= 0) {
+                    addStructure(p, hex, RESOURCE_TYPES[random.nextInt(RESOURCE_TYPES.length)], C.NEUTRAL);
+                }
+            }
+        }
+    }
+
+    /**
+     * Largest number of planets which fit on the star map. Planets are placed
+     * on a lattice, three squares apart if they fit, so that the squares
+     * around each planet where its space stacks are shown do not overlap,
+     * else two squares apart.
+     */
+    private static int maxPlanets() {
+        return latticeSize(2);
+    }
+
+    private static int latticeSize(int spacing) {
+        return ((C.STAR_MAP_WIDTH - 2) / spacing) * ((C.STAR_MAP_HEIGHT - 2) / spacing);
+    }
+
+    private void placePlanets() {
+        int spacing = spec.planets <= latticeSize(3) ? 3 : 2;
+        int w = (C.STAR_MAP_WIDTH - 2) / spacing;
+        int[] sites = new int[latticeSize(spacing)];
+        for (int i = 0; i < sites.length; i++) {
+            sites[i] = i;
+        }
+        shuffle(sites);
+        for (int p = 0; p < spec.planets; p++) {
+            star_xy[p] = new int[]{1 + spacing * (sites[p] % w), 1 + spacing * (sites[p] / w)};
+        }
+    }
+
+    /**
+     * Grow the continents of planet p from random seeds in turns, a land hex
+     * is added next to a continent only if it does not touch another
+     * continent, so continents stay apart. The polar rows are ocean.
+     */
+    private void growContinents(int p) {
+        int[] land_nr = new int[HEXES];
+        Arrays.fill(land_nr, -1);
+        int target = spec.land * C.PLANET_MAP_WIDTH * (C.PLANET_MAP_COLUMNS - 2) / 100;
+        List<List<Integer>> frontiers = new ArrayList<>();
+        for (int c = 0; c < spec.continents; c++) {
+            List<Integer> frontier = new ArrayList<>();
+            frontier.add(random.nextInt(C.PLANET_MAP_WIDTH) + C.PLANET_MAP_WIDTH * (1 + random.nextInt(C.PLANET_MAP_COLUMNS - 2)));
+            frontiers.add(frontier);
+        }
+        int[] weights = TERRAIN_WEIGHTS[tile_set[p]];
+        int land = 0;
+        boolean grown = true;
+        while (land < target && grown) {
+            grown = false;
+            for (int c = 0; c < frontiers.size() && land < target; c++) {
+                List<Integer> frontier = frontiers.get(c);
+                while (!frontier.isEmpty()) {
+                    int idx = frontier.remove(random.nextInt(frontier.size()));
+                    if (land_nr[idx] != -1 || !canGrow(land_nr, idx, c)) {
+                        continue;
+                    }
+                    land_nr[idx] = c;
+                    terrain[p][idx] = LAND_TERRAIN[weighted(weights)];
+                    land++;
+                    grown = true;
+                    for (Hex n : topology.getHex(idx).getNeighbours()) {
+                        if (n != null && land_nr[n.getHexIdx()] == -1) {
+                            frontier.add(n.getHexIdx());
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean canGrow(int[] land_nr, int idx, int continent) {
+        Hex hex = topology.getHex(idx);
+        if (hex.getY() == 0 || hex.getY() == C.PLANET_MAP_COLUMNS - 1) {
+            return false;
+        }
+        for (Hex n : hex.getNeighbours()) {
+            if (n != null && land_nr[n.getHexIdx()] != -1 && land_nr[n.getHexIdx()] != continent) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void connectPlanets() {
+        Set<Long> added = new HashSet<>();
+        int n = spec.planets;
+        switch (spec.gates) {
+            case RING:
+                Integer[] order = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Double.compare(angle(a), angle(b)));
+                for (int i = 0; i < n; i++) {
+                    addGate(added, order[i], order[(i + 1) % n]);
+                }
+                break;
+            case HUB:
+                for (int i = 1; i < n; i++) {
+                    addGate(added, 0, i);
+                }
+                break;
+            case TREE:
+            case MESH:
+                int[] connected = new int[n];
+                int[] order2 = new int[n];
+                for (int i = 0; i < n; i++) {
+                    order2[i] = i;
+                }
+                shuffle(order2);
+                connected[0] = order2[0];
+                for (int i = 1; i < n; i++) {
+                    int nearest = connected[0];
+                    for (int j = 1; j < i; j++) {
+                        if (distance(order2[i], connected[j]) < distance(order2[i], nearest)) {
+                            nearest = connected[j];
+                        }
+                    }
+                    addGate(added, order2[i], nearest);
+                    connected[i] = order2[i];
+                }
+                if (spec.gates == Topology.TREE) {
+                    break;
+                }
+                for (int i = 0; i < n; i++) {
+                    int nearest = -1;
+                    for (int j = 0; j < n; j++) {
+                        if (j != i && !added.contains(gateKey(i, j))
+                                && (nearest == -1 || distance(i, j) < distance(i, nearest))) {
+                            nearest = j;
+                        }
+                    }
+                    if (nearest != -1 && gates.size() < C.MAX_JUMP_GATES) {
+                        addGate(added, i, nearest);
+                    }
+                }
+                break;
+            default:
+                throw new AssertionError(spec.gates);
+        }
+    }
+
+    private double angle(int p) {
+        return Math.atan2(star_xy[p][1] - C.STAR_MAP_HEIGHT / 2.0, star_xy[p][0] - C.STAR_MAP_WIDTH / 2.0);
+    }
+
+    private int distance(int p1, int p2) {
+        int dx = star_xy[p1][0] - star_xy[p2][0];
+        int dy = star_xy[p1][1] - star_xy[p2][1];
+        return dx * dx + dy * dy;
+    }
+
+    private static long gateKey(int p1, int p2) {
+        return ((long) Math.min(p1, p2) << 32) | Math.max(p1, p2);
+    }
+
+    private void addGate(Set<Long> added, int p1, int p2) {
+        if (p1 != p2 && added.add(gateKey(p1, p2))) {
+            gates.add(new int[]{p1, p2});
+        }
+    }
+
+    /**
+     * Home cities on distinct planets, not on Byzantium II which the game
+     * treats specially, other cities on random planets.
+     *
+     * @return cities of each faction as {planet, hex index}
+     */
+    private List<List<int[]>> placeCities() {
+        int[] homes = new int[spec.planets];
+        for (int i = 0; i < homes.length; i++) {
+            homes[i] = i;
+        }
+        shuffle(homes);
+        List<List<int[]>> ret_val = new ArrayList<>();
+        int h = 0;
+        for (int f = 0; f < spec.factions; f++) {
+            if (homes[h] == C.BYZ_II_P_IDX) {
+                h++;
+            }
+            List<int[]> cities = new ArrayList<>();
+            placeCity(cities, homes[h++], f, HOME_CITY[f]);
+            for (int i = 0; i < spec.cities; i++) {
+                placeCity(cities, random.nextInt(spec.planets), f, CITY_TYPES[random.nextInt(CITY_TYPES.length)]);
+            }
+            ret_val.add(cities);
+        }
+        return ret_val;
+    }
+
+    private void placeCity(List<int[]> cities, int planet, int faction, int type) {
+        for (int i = 0; i < TRIES; i++, planet = random.nextInt(spec.planets)) {
+            int hex = freeHex(planet, faction);
+            if (hex >= 0) {
+                addStructure(planet, hex, type, faction);
+                hex_owner[planet][hex] = faction;
+                cities.add(new int[]{planet, hex});
+                return;
+            }
+        }
+        throw new IllegalArgumentException("No room for cities in " + spec);
+    }
+
+    /**
+     * A random hex of planet where faction may place a structure, -1 if none
+     * was found.
+     */
+    private int freeHex(int planet, int faction) {
+        for (int i = 0; i < TRIES; i++) {
+            int hex = random.nextInt(HEXES);
+            if (isPassableLand(planet, hex) && !hex_structure[planet][hex]
+                    && (hex_owner[planet][hex] == -1 || hex_owner[planet][hex] == faction)) {
+                return hex;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isPassableLand(int planet, int hex) {
+        return terrain[planet][hex] != T_OCEAN && terrain[planet][hex] != T_MOUNTAIN;
+    }
+
+    /**
+     * Place a stack of spec.units ground units near a random city of the
+     * faction.
+     */
+    private void placeStack(int faction, List<int[]> cities) {
+        for (int i = 0; i < TRIES; i++) {
+            int[] city = cities.get(random.nextInt(cities.size()));
+            int planet = city[0];
+            List<Hex> near = new ArrayList<>(Util.getHexesWithinRadiusOf(topology.getHex(city[1]), STACK_RADIUS, null));
+            Hex hex = near.get(random.nextInt(near.size()));
+            int idx = hex.getHexIdx();
+            if (!isPassableLand(planet, idx) || (hex_owner[planet][idx] != -1 && hex_owner[planet][idx] != faction)
+                    || hex_units[planet][idx] + spec.units > C.STACK_SIZE) {
+                continue;
+            }
+            hex_owner[planet][idx] = faction;
+            hex_units[planet][idx] += spec.units;
+            // planet map coordinates as in the galaxy file, see Game.placeUnits()
+            int y = hex.getX() % 2 == 0 ? 2 * hex.getY() + 1 : 2 * hex.getY();
+            for (int u = 0; u < spec.units; u++) {
+                addUnit(planet, hex.getX(), y, faction, ground_types[random.nextInt(ground_types.length)], FLAG_ON_PLANET);
+            }
+            return;
+        }
+        throw new IllegalArgumentException("No room for stacks in " + spec);
+    }
+
+    /**
+     * Place a stack of spec.units space units in orbit of a planet with a
+     * city of the faction.
+     */
+    private void placeFleet(int faction, List<int[]> cities) {
+        for (int i = 0; i < TRIES; i++) {
+            int planet = cities.get(random.nextInt(cities.size()))[0];
+            if (space_units[planet][faction] + spec.units > C.STACK_SIZE) {
+                continue;
+            }
+            space_units[planet][faction] += spec.units;
+            for (int u = 0; u < spec.units; u++) {
+                addUnit(planet, star_xy[planet][0], star_xy[planet][1], faction,
+                        space_types[random.nextInt(space_types.length)], 0);
+            }
+            return;
+        }
+        throw new IllegalArgumentException("No room for fleets in " + spec);
+    }
+
+    private void addUnit(int planet, int x, int y, int owner, int type, int flags) {
+        units.add(new int[]{planet, x, y, owner, type, flags});
+    }
+
+    private void addStructure(int planet, int hex, int type, int owner) {
+        Hex h = topology.getHex(hex);
+        int y = h.getX() % 2 == 0 ? 2 * h.getY() + 1 : 2 * h.getY();
+        structures.add(new int[]{planet, h.getX(), y, type, owner});
+        hex_structure[planet][hex] = true;
+    }
+
+    private int weighted(int[] weights) {
+        int sum = 0;
+        for (int w : weights) {
+            sum += w;
+        }
+        int r = random.nextInt(sum);
+        int i = 0;
+        while (r >= weights[i]) {
+            r -= weights[i++];
+        }
+        return i;
+    }
+
+    private void shuffle(int[] a) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = a[i];
+            a[i] = a[j];
+            a[j] = tmp;
+        }
+    }
+
+    /**
+     * Encode the galaxy in the GALAXY.GAL format, see Galaxy(ByteBuffer) and
+     * the constructors of the galaxy objects.
+     *
+     * @return little endian buffer positioned at the start of the galaxy
+     */
+    public ByteBuffer encode() {
+        int planet_size = 6 + 4 * C.UNIT_POS + C.PLANET_NAME + 12 + 4 * C.PLANET_MAP_WIDTH * C.PLANET_MAP_HEIGHT;
+        int size = 8 + 4 * C.STAR_MAP_HEIGHT * C.STAR_MAP_WIDTH + spec.planets * planet_size
+                + gates.size() * 12 + units.size() * 38 + structures.size() * 40 + 4 * 2;
+        ByteBuffer buf = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(VERSION);
+        buf.putInt(units.size());
+        for (int i = 0; i < C.STAR_MAP_HEIGHT * C.STAR_MAP_WIDTH; i++) {
+            buf.putInt(0);
+        }
+        for (int p = 0; p < spec.planets; p++) {
+            encodePlanet(buf, p);
+        }
+        buf.putShort((short) C.END_OF_SECTION);
+        for (int[] gate : gates) {
+            buf.putShort((short) star_xy[gate[0]][0]);
+            buf.putShort((short) star_xy[gate[0]][1]);
+            buf.putShort((short) star_xy[gate[1]][0]);
+            buf.putShort((short) star_xy[gate[1]][1]);
+            buf.putInt(0);
+        }
+        buf.putShort((short) C.END_OF_SECTION);
+        for (int i = 0; i < units.size(); i++) {
+            encodeUnit(buf, units.get(i), i);
+        }
+        buf.putShort((short) C.END_OF_SECTION);
+        for (int[] structure : structures) {
+            encodeStructure(buf, structure);
+        }
+        buf.putShort((short) C.END_OF_SECTION);
+        buf.flip();
+        return buf;
+    }
+
+    private void encodePlanet(ByteBuffer buf, int p) {
+        buf.putShort((short) star_xy[p][0]);
+        buf.putShort((short) star_xy[p][1]);
+        buf.putShort((short) 0); // cur_rot_pos
+        for (int i = 0; i < C.UNIT_POS; i++) {
+            buf.putInt(0);
+        }
+        byte[] name = new byte[C.PLANET_NAME];
+        byte[] s = ("Planet " + p).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(s, 0, name, 0, Math.min(s.length, name.length - 1));
+        buf.put(name);
+        buf.putShort((short) C.NEUTRAL); // owner
+        buf.putShort((short) 0); // sect
+        buf.putInt(0); // flags
+        buf.putInt(tile_set[p]);
+        // hex rows of even columns are at odd positions and vice versa,
+        // see Planet(ByteBuffer, Galaxy, int)
+        for (int i = 0; i < C.PLANET_MAP_WIDTH; i++) {
+            for (int j = 0; j < C.PLANET_MAP_HEIGHT; j++) {
+                boolean hex = j < C.PLANET_MAP_HEIGHT - 1 && (i % 2 == 0) == (j % 2 == 1);
+                buf.putInt(hex ? terrain[p][i + C.PLANET_MAP_WIDTH * (j / 2)] : T_OCEAN);
+            }
+        }
+    }
+
+    private static void encodeUnit(ByteBuffer buf, int[] unit, int unit_no) {
+        buf.putShort((short) unit[0]); // p_idx
+        buf.putShort((short) unit[1]); // x
+        buf.putShort((short) unit[2]); // y
+        buf.put((byte) unit[3]); // owner
+        buf.put((byte) unit[4]); // type
+        buf.put((byte) 0); // t_lvl
+        buf.put((byte) 100); // loyalty
+        buf.putShort((short) 0); // orders
+        buf.put((byte) 0); // experience
+        buf.put((byte) 0); // move_points
+        buf.put((byte) 0); // res_relic
+        buf.putShort((short) 0); // amount
+        buf.put((byte) 100); // health
+        buf.put((byte) 0); // sect
+        buf.put((byte) 0);
+        buf.putInt(unit_no);
+        buf.putInt(unit[5]); // flags
+        buf.put((byte) 0); // used_unit_type
+        buf.put((byte) 0); // used_unitt_lvl
+        buf.put((byte) 0); // camo
+        buf.put((byte) 0); // dest_x
+        buf.put((byte) 0); // dest_y
+        buf.put((byte) 0); // ai_orders
+        buf.put((byte) 0); // task_force
+        buf.putShort((short) 0); // ai_data2
+        buf.put((byte) 0); // wait_level
+    }
+
+    private static void encodeStructure(ByteBuffer buf, int[] structure) {
+        buf.putShort((short) structure[0]); // p_idx
+        buf.putShort((short) structure[1]); // x
+        buf.putShort((short) structure[2]); // y
+        buf.putShort((short) structure[3]); // type
+        buf.putShort((short) structure[4]); // owner
+        buf.putShort((short) 0);
+        for (int i = 0; i < 6; i++) { // prod_ruin_type to unit_loyalty
+            buf.putShort((short) 0);
+        }
+        buf.putShort((short) 100); // loyalty
+        for (int i = 0; i < 3; i++) { // stack_info to tech_type
+            buf.putShort((short) 0);
+        }
+        buf.putShort((short) 100); // health
+        buf.putShort((short) 0); // sect
+        buf.putInt(0); // flags
+    }
+}
@@ -30,12 +30,14 @@ package galaxyreader;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 
 /**
- * A class containing methods for reading bytes from a FileChannel.
+ * Galaxy file access. Galaxy files are decoded from a little endian memory
+ * mapped view of the whole file, see mapFile().
  *
  * @author joulupunikki
  */
@@ -63,68 +65,17 @@ public class GalaxyReader {
     }
 
     /**
-     * Reads a byte. Byte order is little endian.
+     * Maps the whole file of fc into memory as a read only little endian
+     * buffer positioned at the start of the file. The mapping stays valid
+     * after fc is closed.
      *
-     * @param fc the FileChannel to be read.
-     * @param index the position from which the byte is read.
-     * @return the byte which was read.
+     * @param fc the FileChannel to be mapped.
+     * @return the mapped buffer.
      * @throws IOException
      */
-    public static byte readByte(FileChannel fc, long index) throws IOException {
-        byte r = -1;
-        int nread;
-        ByteBuffer bf = ByteBuffer.allocate(1);
-        bf.order(ByteOrder.LITTLE_ENDIAN);
-        fc.position(index);
-        do {
-            nread = fc.read(bf);
-        } while (nread != -1 && bf.hasRemaining());
-        bf.rewind();
-        r = bf.get();
-        return r;
-    }
-
-    /**
-     * Reads a short, that is two bytes. Byte order is little endian.
-     *
-     * @param fc the FileChannel to be read.
-     * @param index the position from which the short is read.
-     * @return the short which was read.
-     * @throws IOException
-     */
-    public static short readShort(FileChannel fc, long index) throws IOException {
-        short r = -1;
-        int nread;
-        ByteBuffer bf = ByteBuffer.allocate(2);
-        bf.order(ByteOrder.LITTLE_ENDIAN);
-        fc.position(index);
-        do {
-            nread = fc.read(bf);
-        } while (nread != -1 && bf.hasRemaining());
-        bf.rewind();
-        r = bf.getShort();
-        return r;
-    }
-
-    /**
-     * Reads an int, that is four bytes. Byte order is little endian.
-     *
-     * @param fc the FileChannel to be read.
-     * @param index the position from which the int is read.
-     * @return the int which was read.
-     * @throws IOException
-     */
-    public static int readInt(FileChannel fc, long index) throws IOException {
-        int r = -1;
-        int nread;
-        ByteBuffer bf = ByteBuffer.allocate(4);
-        bf.order(ByteOrder.LITTLE_ENDIAN);
-        fc.position(index);
-        do {
-            nread = fc.read(bf);
-        } while (nread != -1 && bf.hasRemaining());
-        bf.rewind();
-        r = bf.getInt();
-        return r;
+    public static ByteBuffer mapFile(FileChannel fc) throws IOException {
+        MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        return buf;
     }
 }
@@ -29,7 +29,7 @@ package galaxyreader;
 
 import java.io.IOException;
 import java.io.Serializable;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 
 /**
  * A class representing a jump gate object. Contains coordinates of the jump
@@ -55,23 +55,21 @@ public class JumpGate implements Serializable {
      * Creates a jump gate object. Reads in coordinates of the jump gate's end
      * points.
      *
-     * @param fc the FileChannel which contains the file from which the data is
-     * read.
-     * @param count the Counter containing the position from which the data is
-     * read.
+     * @param buf little endian buffer over the galaxy file, positioned at
+     * the data to be read.
      * @throws IOException
      */
-    public JumpGate(FileChannel fc, Counter count) throws IOException {
-        count.getSet(-2);
-        x1 = GalaxyReader.readShort(fc, count.getSet(2));
-        y1 = GalaxyReader.readShort(fc, count.getSet(2));
-        x2 = GalaxyReader.readShort(fc, count.getSet(2));
-        y2 = GalaxyReader.readShort(fc, count.getSet(2));
-        flags = GalaxyReader.readInt(fc, count.getSet(4));
+    public JumpGate(ByteBuffer buf) throws IOException {
+        buf.position(buf.position() - 2);
+        x1 = buf.getShort();
+        y1 = buf.getShort();
+        x2 = buf.getShort();
+        y2 = buf.getShort();
+        flags = buf.getInt();
         planet_1_index = 0;
         planet_2_index = 0;
-//        planet_1_index = GalaxyReader.readInt(fc, count.getSet(4));
-//        planet_2_index = GalaxyReader.readInt(fc, count.getSet(4));
+//        planet_1_index = buf.getInt();
+//        planet_2_index = buf.getInt();
 
     }
 
@@ -29,12 +29,14 @@ package galaxyreader;
 
 import game.PlanetGrid;
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 import util.C;
+import util.UnitStack;
 import util.Util;
 
 /**
@@ -76,57 +78,53 @@ public class Planet implements Serializable {
      * Creates a planet object. Reads in positional coordinates, name, owner and
      * other fields.
      *
-     * @param fc the FileChannel containing the file from which the data is
-     * read.
-     * @param count the Counter containing the position from which the data is
-     * read.
+     * @param buf little endian buffer over the galaxy file, positioned at
+     * the data to be read.
      * @param gal reference to the galaxy object which invokes this constructor.
      * @throws IOException
      */
-    public Planet(FileChannel fc, Counter count, Galaxy gal, int index) throws IOException {
+    public Planet(ByteBuffer buf, Galaxy gal, int index) throws IOException {
 
-        count.getSet(-2);
+        buf.position(buf.position() - 2);
         this.index = index;
-        x = GalaxyReader.readShort(fc, count.getSet(2));
-        y = GalaxyReader.readShort(fc, count.getSet(2));
-        cur_rot_pos = GalaxyReader.readShort(fc, count.getSet(2));
+        x = buf.getShort();
+        y = buf.getShort();
+        cur_rot_pos = buf.getShort();
 
         unit_pos = new int[C.UNIT_POS];
         for (int i = 0; i < C.UNIT_POS; i++) {
-            unit_pos[i] = GalaxyReader.readInt(fc, count.getSet(4));
+            unit_pos[i] = buf.getInt();
 
         }
 
 //        count.getSet(-1);
-        char[] ca = new char[C.PLANET_NAME];
-        for (int i = 0; i < C.PLANET_NAME; i++) {
-            ca[i] = (char) GalaxyReader.readByte(fc, count.getSet(1));
-//            System.out.print(ca[i]);
-//            System.out.println(" " + (int) ca[i]);
-        }
-//        System.out.println();
-        name = new String(ca);
+        byte[] ba = new byte[C.PLANET_NAME];
+        buf.get(ba);
         //remove garbage from end of name
         int end_of_name = 0;
-        for (int i = 0; (i < ca.length) && (((int) ca[i]) != 0); i++) {
+        for (int i = 0; (i < ba.length) && (ba[i] != 0); i++) {
             end_of_name++;
         }
-        name = name.substring(0, end_of_name);
+        char[] ca = new char[end_of_name];
+        for (int i = 0; i < end_of_name; i++) {
+            ca[i] = (char) ba[i];
+        }
+        name = new String(ca);
 //        count.getSet(1);
 
-        owner = GalaxyReader.readShort(fc, count.getSet(2));
+        owner = buf.getShort();
 
-        sect = GalaxyReader.readShort(fc, count.getSet(2));
+        sect = buf.getShort();
 
-        flags = GalaxyReader.readInt(fc, count.getSet(4));
+        flags = buf.getInt();
 
-        tile_set_type = GalaxyReader.readInt(fc, count.getSet(4));
+        tile_set_type = buf.getInt();
 
 //        System.out.println(gal.version);
         if (gal.version < 961024) {
 
             for (int i = 0; i < 3; i++) {
-                GalaxyReader.readInt(fc, count.getSet(4));
+                buf.getInt();
 
             }
         }
@@ -135,7 +133,7 @@ public class Planet implements Serializable {
         int[][] planet_map_tmp = new int[C.PLANET_MAP_WIDTH][C.PLANET_MAP_COLUMNS];
         for (int i = 0; i < C.PLANET_MAP_WIDTH; i++) {
             for (int j = 0; j < C.PLANET_MAP_HEIGHT; j++) {
-                hex_buffer[i][j] = GalaxyReader.readInt(fc, count.getSet(4));
+                hex_buffer[i][j] = buf.getInt();
             }
         }
         // cull hextile data
@@ -153,10 +151,10 @@ public class Planet implements Serializable {
         planet_map = planet_map_tmp;
 
         // google "java generic array creation"
-        space_stacks = (LinkedList<Unit>[]) new LinkedList[14];
+        space_stacks = (List<Unit>[]) new List[14];
 //        space_stacks = new LinkedList<Unit>[13]; doesn't work
         for (int i = 0; i < space_stacks.length; i++) {
-            space_stacks[i] = new LinkedList<>();
+            space_stacks[i] = new UnitStack();
 
         }
 
@@ -210,6 +208,16 @@ public class Planet implements Serializable {
 
     }
 
+    /**
+     * Saves made before UnitStack have LinkedList space stacks, convert them.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (int i = 0; i < space_stacks.length; i++) {
+            space_stacks[i] = UnitStack.of(space_stacks[i]);
+        }
+    }
+
     public int[][] getMap() {
         return planet_map;
     }
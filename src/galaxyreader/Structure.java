@@ -35,11 +35,11 @@ import game.Message;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.util.LinkedList;
 import java.util.List;
 import util.C;
-import util.Util;
+import util.StackIterator;
 
 /**
  * A class representing a structure object.
@@ -72,6 +72,7 @@ public class Structure implements Serializable {
     int sect; //short
     private int flags; //UINT
     public short task_force = 0x0;
+    public transient int asset_seq; // sequence number in Game AssetIndex, 0 if not indexed
     int unit_health; //short 
     int temp_count;  //short 
     int temp_count2; //short 
@@ -87,41 +88,39 @@ public class Structure implements Serializable {
      * Creates a structure object. Reads in coordinates, owner, loyalty and
      * other fields.
      *
-     * @param fc the FileChannel which contains the file from which the data is
-     * read.
-     * @param count the Counter containing the position from which the data is
-     * read.
+     * @param buf little endian buffer over the galaxy file, positioned at
+     * the data to be read.
      * @throws IOException
      */
-    public Structure(FileChannel fc, Counter count) throws IOException {
+    public Structure(ByteBuffer buf) throws IOException {
 
-        count.getSet(-2);
+        buf.position(buf.position() - 2);
 
-        p_idx = GalaxyReader.readShort(fc, count.getSet(2));
-        x = GalaxyReader.readShort(fc, count.getSet(2));
-        y = GalaxyReader.readShort(fc, count.getSet(2));
+        p_idx = buf.getShort();
+        x = buf.getShort();
+        y = buf.getShort();
 
-        type = GalaxyReader.readShort(fc, count.getSet(2));
-        owner = GalaxyReader.readShort(fc, count.getSet(2));
-        GalaxyReader.readShort(fc, count.getSet(2));
+        type = buf.getShort();
+        owner = buf.getShort();
+        buf.getShort();
         prev_owner = owner;
-        prod_ruin_type = GalaxyReader.readShort(fc, count.getSet(2));
-        prod_info = GalaxyReader.readShort(fc, count.getSet(2));
-        turns_left = GalaxyReader.readShort(fc, count.getSet(2));
-        city_info = GalaxyReader.readShort(fc, count.getSet(2));
-        prev_type = GalaxyReader.readShort(fc, count.getSet(2));
-        unit_loyalty = GalaxyReader.readShort(fc, count.getSet(2));
+        prod_ruin_type = buf.getShort();
+        prod_info = buf.getShort();
+        turns_left = buf.getShort();
+        city_info = buf.getShort();
+        prev_type = buf.getShort();
+        unit_loyalty = buf.getShort();
 
-        loyalty = GalaxyReader.readShort(fc, count.getSet(2));
+        loyalty = buf.getShort();
 
-        stack_info = GalaxyReader.readShort(fc, count.getSet(2));
-        used_unitt_lvl = GalaxyReader.readShort(fc, count.getSet(2));
+        stack_info = buf.getShort();
+        used_unitt_lvl = buf.getShort();
 
-        tech_type = GalaxyReader.readShort(fc, count.getSet(2));
+        tech_type = buf.getShort();
 
-        health = GalaxyReader.readShort(fc, count.getSet(2));
-        sect = GalaxyReader.readShort(fc, count.getSet(2));
-        flags = GalaxyReader.readInt(fc, count.getSet(4));
+        health = buf.getShort();
+        sect = buf.getShort();
+        flags = buf.getInt();
 
         unit_health = 0;
         temp_count = 0;
@@ -167,7 +166,8 @@ public class Structure implements Serializable {
         // need to use this.p_idx building city may not be on current planet
         List<Unit> stack = game.getPlanetGrid(city.p_idx).getHex(city.x, city.y).getStack();
         if (input > -1) {
-            for (Unit unit : Util.xS(stack)) {
+            StackIterator iter = new StackIterator(stack);
+            for (Unit unit = iter.next(); unit != null; unit = iter.next()) {
                 if (unit.type == input && unit.t_lvl == 0) {
                     input_unit = unit;
                     break;
@@ -31,13 +31,14 @@ package galaxyreader;
 import dat.UnitType;
 import game.Game;    // RSW
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
-import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import util.C;
+import util.UnitStack;
 
 /**
  * A class representing a unit object. Contains the units location, loyalty,
@@ -104,6 +105,7 @@ public class Unit implements Serializable {
     public Unit carrier = null; //unit which carries this unit
 
     public int turns_starving;    // RSW added
+    public transient int asset_seq; // sequence number in Game AssetIndex, 0 if not indexed
 
     public void promote() {
         if (this.experience < XP.ELITE.ordinal()) {
@@ -170,7 +172,7 @@ public class Unit implements Serializable {
         this.wait_level = 0;
         this.unit_list = null;
         this.group_list = null;
-        this.cargo_list = new LinkedList<>();
+        this.cargo_list = new UnitStack();
         this.group_end_mark = 0;
         this.in_space = false;
         this.is_sentry = false;
@@ -190,48 +192,46 @@ public class Unit implements Serializable {
      * Creates a unit object. Reads in coordinates, loyalty, owner and other
      * fields.
      *
-     * @param fc the FileChannel which contains the file from which the data is
-     * read.
-     * @param count the Counter containing the position from which the data is
-     * read.
+     * @param buf little endian buffer over the galaxy file, positioned at
+     * the data to be read.
      * @throws IOException
      */
-    public Unit(FileChannel fc, Counter count) throws IOException {
-        count.getSet(-2);
-        p_idx = GalaxyReader.readShort(fc, count.getSet(2));
-        x = GalaxyReader.readShort(fc, count.getSet(2));
-        y = GalaxyReader.readShort(fc, count.getSet(2));
-
-        owner = GalaxyReader.readByte(fc, count.getSet(1));
-
-        type = GalaxyReader.readByte(fc, count.getSet(1));
-        t_lvl = GalaxyReader.readByte(fc, count.getSet(1));
-        loyalty = GalaxyReader.readByte(fc, count.getSet(1));
-        move_type = C.MoveType.FOOT; // GalaxyReader.readShort(fc, count.getSet(2));  
-        orders = GalaxyReader.readShort(fc, count.getSet(2));
-        experience = GalaxyReader.readByte(fc, count.getSet(1));
-        move_points = GalaxyReader.readByte(fc, count.getSet(1));
-        res_relic = GalaxyReader.readByte(fc, count.getSet(1));
-        amount = GalaxyReader.readShort(fc, count.getSet(2));
-        health = GalaxyReader.readByte(fc, count.getSet(1));
+    public Unit(ByteBuffer buf) throws IOException {
+        buf.position(buf.position() - 2);
+        p_idx = buf.getShort();
+        x = buf.getShort();
+        y = buf.getShort();
+
+        owner = buf.get();
+
+        type = buf.get();
+        t_lvl = buf.get();
+        loyalty = buf.get();
+        move_type = C.MoveType.FOOT; // buf.getShort();  
+        orders = buf.getShort();
+        experience = buf.get();
+        move_points = buf.get();
+        res_relic = buf.get();
+        amount = buf.getShort();
+        health = buf.get();
         health_tmp = health;
-        sect = GalaxyReader.readByte(fc, count.getSet(1));
-        GalaxyReader.readByte(fc, count.getSet(1));
+        sect = buf.get();
+        buf.get();
         prev_owner = owner;
-        unit_no = GalaxyReader.readInt(fc, count.getSet(4));
-        flags = GalaxyReader.readInt(fc, count.getSet(4));
-        used_unit_type = GalaxyReader.readByte(fc, count.getSet(1));
-        used_unitt_lvl = GalaxyReader.readByte(fc, count.getSet(1));
-        camo = GalaxyReader.readByte(fc, count.getSet(1));
-        dest_x = GalaxyReader.readByte(fc, count.getSet(1));
-        dest_y = GalaxyReader.readByte(fc, count.getSet(1));
-        move_cost = 0; //GalaxyReader.readInt(fc, count.getSet(4));   
-        t_flags = 0; //GalaxyReader.readByte(fc, count.getSet(1));     
-        ai_orders = GalaxyReader.readByte(fc, count.getSet(1));
-        task_force = GalaxyReader.readByte(fc, count.getSet(1));
+        unit_no = buf.getInt();
+        flags = buf.getInt();
+        used_unit_type = buf.get();
+        used_unitt_lvl = buf.get();
+        camo = buf.get();
+        dest_x = buf.get();
+        dest_y = buf.get();
+        move_cost = 0; //buf.getInt();   
+        t_flags = 0; //buf.get();     
+        ai_orders = buf.get();
+        task_force = buf.get();
 // if ((orig_version >= 961025) || (save_version >= 961027)) {
-        ai_data2 = GalaxyReader.readShort(fc, count.getSet(2));
-        wait_level = GalaxyReader.readByte(fc, count.getSet(1));
+        ai_data2 = buf.getShort();
+        wait_level = buf.get();
         ai_orders = 0;
         task_force = 0;
         ai_data2 = 0;
@@ -244,13 +244,13 @@ public class Unit implements Serializable {
          */
         unit_list = null; //  
         group_list = null; //  
-        cargo_list = new LinkedList<>(); //  
-        short section = GalaxyReader.readShort(fc, count.getSet(2));
+        cargo_list = new UnitStack(); //  
+        short section = buf.getShort();
         if (section == -3) {
             group_end_mark = section;
         } else {
-            count.getSet(-2);
-        } //GalaxyReader.readShort(fc, count.getSet(2)); //short 
+            buf.position(buf.position() - 2);
+        } //buf.getShort(); //short 
 
         if ((flags & 0x01) == 0x01) {
             in_space = false;
@@ -353,7 +353,7 @@ public class Unit implements Serializable {
 
         unit_list = null;    // I don't think this is used. RSW
         group_list = null;    // I don't think this is used. RSW
-        cargo_list = new LinkedList<>(); // Unit has no cargo
+        cargo_list = new UnitStack(); // Unit has no cargo
         group_end_mark = -3;    // I don't know what this is. I just got this value from the first constructor. RSW
 
         in_space = false;
@@ -407,6 +407,14 @@ public class Unit implements Serializable {
         return cargo_list.contains(u);
     }
 
+    /**
+     * Saves made before UnitStack have a LinkedList cargo list, convert it.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        cargo_list = UnitStack.of(cargo_list);
+    }
+
     public static int spotRange(int spot) {
         int r_v = 0;
         r_v = spot / 2 - 1;
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package game;
+
+import galaxyreader.Structure;
+import galaxyreader.Unit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import util.C;
+
+/**
+ * Index of units and structures by owner, by previous owner and by owner and
+ * planet, so that per turn bookkeeping of a faction visits only the assets of
+ * that faction instead of scanning the global unit and structure lists.
+ * <p>
+ * Every indexed asset gets a sequence number in the order it was added, and
+ * the index lists are kept in sequence order. Since new assets are appended
+ * to the global lists too, index lists are in the same order as the global
+ * lists and iterating them gives the same results as a filtered scan.
+ * <p>
+ * Maintained by Game: units and structures must be added with addUnit() and
+ * addStructure(), removed with removeUnit() and removeStructure(), and owner
+ * or planet changes must be bracketed by unitChanging()/unitChanged() and
+ * structureChanging()/structureChanged(). Not saved, Game rebuilds the index
+ * from the global lists when needed.
+ *
+ * @author joulupunikki
+ */
+public class AssetIndex {
+
+    private final int nr_planets;
+    private final List<Unit>[] units_by_owner;
+    private final List<Unit>[] units_by_prev_owner;
+    private final List<Unit>[] units_by_owner_planet;
+    private final List<Structure>[] cities_by_owner;
+    private final List<Structure>[] cities_by_prev_owner;
+    private final List<Structure>[] cities_by_owner_planet;
+    private int next_seq = 1;
+
+    public AssetIndex(int nr_planets, List<Unit> units, List<Structure> structures) {
+        this.nr_planets = nr_planets;
+        units_by_owner = newLists(C.NR_FACTIONS);
+        units_by_prev_owner = newLists(C.NR_FACTIONS);
+        units_by_owner_planet = newLists(C.NR_FACTIONS * nr_planets);
+        cities_by_owner = newLists(C.NR_FACTIONS);
+        cities_by_prev_owner = newLists(C.NR_FACTIONS);
+        cities_by_owner_planet = newLists(C.NR_FACTIONS * nr_planets);
+        for (Unit unit : units) {
+            unit.asset_seq = 0;
+            addUnit(unit);
+        }
+        for (Structure city : structures) {
+            city.asset_seq = 0;
+            addStructure(city);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> List<T>[] newLists(int n) {
+        List<T>[] lists = new List[n];
+        for (int i = 0; i < n; i++) {
+            lists[i] = new ArrayList<>();
+        }
+        return lists;
+    }
+
+    /**
+     * Units owned by faction, in unit list order. Live list, must not be
+     * modified, nor may units be added, removed or change owner while it is
+     * iterated.
+     *
+     * @param faction faction, or -1 (no faction, before the first turn)
+     * @return
+     */
+    public List<Unit> getUnits(int faction) {
+        if (faction < 0) {
+            return Collections.emptyList();
+        }
+        return units_by_owner[faction];
+    }
+
+    /**
+     * Units whose previous owner is faction, in unit list order. Live list,
+     * see getUnits().
+     *
+     * @param faction
+     * @return
+     */
+    public List<Unit> getUnitsByPrevOwner(int faction) {
+        return units_by_prev_owner[faction];
+    }
+
+    /**
+     * Units owned by faction on planet p_idx, in unit list order. Live list,
+     * see getUnits().
+     *
+     * @param faction
+     * @param p_idx
+     * @return
+     */
+    public List<Unit> getUnits(int faction, int p_idx) {
+        return units_by_owner_planet[faction * nr_planets + p_idx];
+    }
+
+    /**
+     * Structures owned by faction, in structure list order. Live list, see
+     * getUnits().
+     *
+     * @param faction faction, or -1 (no faction, before the first turn)
+     * @return
+     */
+    public List<Structure> getStructures(int faction) {
+        if (faction < 0) {
+            return Collections.emptyList();
+        }
+        return cities_by_owner[faction];
+    }
+
+    /**
+     * Structures whose previous owner is faction, in structure list order.
+     * Live list, see getUnits().
+     *
+     * @param faction
+     * @return
+     */
+    public List<Structure> getStructuresByPrevOwner(int faction) {
+        return cities_by_prev_owner[faction];
+    }
+
+    /**
+     * Structures owned by faction on planet p_idx, in structure list order.
+     * Live list, see getUnits().
+     *
+     * @param faction
+     * @param p_idx
+     * @return
+     */
+    public List<Structure> getStructures(int faction, int p_idx) {
+        return cities_by_owner_planet[faction * nr_planets + p_idx];
+    }
+
+    /**
+     * Index a new unit, does nothing if unit is already indexed.
+     *
+     * @param unit
+     */
+    public void addUnit(Unit unit) {
+        if (unit.asset_seq != 0) {
+            return;
+        }
+        unit.asset_seq = next_seq++;
+        insertUnit(unit);
+    }
+
+    /**
+     * Remove a unit from the index, does nothing if unit is not indexed.
+     *
+     * @param unit
+     */
+    public void removeUnit(Unit unit) {
+        if (unit.asset_seq == 0) {
+            return;
+        }
+        unitChanging(unit);
+        unit.asset_seq = 0;
+    }
+
+    /**
+     * To be called before unit owner, previous owner or planet changes.
+     *
+     * @param unit
+     */
+    public void unitChanging(Unit unit) {
+        if (unit.asset_seq == 0) {
+            return;
+        }
+        remove(units_by_owner[unit.owner], unit.asset_seq);
+        remove(units_by_prev_owner[unit.prev_owner], unit.asset_seq);
+        remove(units_by_owner_planet[unit.owner * nr_planets + unit.p_idx], unit.asset_seq);
+    }
+
+    /**
+     * To be called after unit owner, previous owner or planet has changed.
+     *
+     * @param unit
+     */
+    public void unitChanged(Unit unit) {
+        if (unit.asset_seq == 0) {
+            return;
+        }
+        insertUnit(unit);
+    }
+
+    private void insertUnit(Unit unit) {
+        insert(units_by_owner[unit.owner], unit, unit.asset_seq);
+        insert(units_by_prev_owner[unit.prev_owner], unit, unit.asset_seq);
+        insert(units_by_owner_planet[unit.owner * nr_planets + unit.p_idx], unit, unit.asset_seq);
+    }
+
+    /**
+     * Index a new structure, does nothing if city is already indexed.
+     *
+     * @param city
+     */
+    public void addStructure(Structure city) {
+        if (city.asset_seq != 0) {
+            return;
+        }
+        city.asset_seq = next_seq++;
+        insertStructure(city);
+    }
+
+    /**
+     * Remove a structure from the index, does nothing if city is not indexed.
+     *
+     * @param city
+     */
+    public void removeStructure(Structure city) {
+        if (city.asset_seq == 0) {
+            return;
+        }
+        structureChanging(city);
+        city.asset_seq = 0;
+    }
+
+    /**
+     * To be called before structure owner or previous owner changes.
+     *
+     * @param city
+     */
+    public void structureChanging(Structure city) {
+        if (city.asset_seq == 0) {
+            return;
+        }
+        remove(cities_by_owner[city.owner], city.asset_seq);
+        remove(cities_by_prev_owner[city.prev_owner], city.asset_seq);
+        remove(cities_by_owner_planet[city.owner * nr_planets + city.p_idx], city.asset_seq);
+    }
+
+    /**
+     * To be called after structure owner or previous owner has changed.
+     *
+     * @param city
+     */
+    public void structureChanged(Structure city) {
+        if (city.asset_seq == 0) {
+            return;
+        }
+        insertStructure(city);
+    }
+
+    private void insertStructure(Structure city) {
+        insert(cities_by_owner[city.owner], city, city.asset_seq);
+        insert(cities_by_prev_owner[city.prev_owner], city, city.asset_seq);
+        insert(cities_by_owner_planet[city.owner * nr_planets + city.p_idx], city, city.asset_seq);
+    }
+
+    private static int seq(Object asset) {
+        return asset instanceof Unit ? ((Unit) asset).asset_seq : ((Structure) asset).asset_seq;
+    }
+
+    /**
+     * Return index of seq in list sorted by sequence number, or -(insertion
+     * point) - 1 if not found.
+     */
+    private static <T> int search(List<T> list, int seq) {
+        int lo = 0;
+        int hi = list.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int mid_seq = seq(list.get(mid));
+            if (mid_seq < seq) {
+                lo = mid + 1;
+            } else if (mid_seq > seq) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private static <T> void insert(List<T> list, T asset, int seq) {
+        // new assets have the largest sequence number, so usually append
+        if (list.isEmpty() || seq(list.get(list.size() - 1)) < seq) {
+            list.add(asset);
+            return;
+        }
+        int i = search(list, seq);
+        if (i < 0) {
+            list.add(-i - 1, asset);
+        }
+    }
+
+    private static <T> void remove(List<T> list, int seq) {
+        int i = search(list, seq);
+        if (i >= 0) {
+            list.remove(i);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package game;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import util.Util;
+
+/**
+ * Writes rotating autosaves in the background. At the end of a turn the game
+ * is serialized into memory on the calling thread, which gives a consistent
+ * copy since the game is not mutated meanwhile, and the serialized game is
+ * handed to a single writer thread which compresses it and does the disk IO.
+ * Saves are named save_name_0 (newest) to save_name_(keep - 1) (oldest).
+ * <p>
+ * At most QUEUE_SIZE snapshots wait for the writer, if the disk falls behind
+ * the oldest waiting snapshot is dropped so that turns never block on IO.
+ * Each save is written to a temporary file, synced to disk and only then
+ * rotated in, so a crash while saving never destroys an older autosave. The
+ * writer thread exits when idle so an abandoned AutoSave holds no threads.
+ *
+ * @author joulupunikki
+ */
+public class AutoSave {
+
+    private static final Logger logger = LogManager.getLogger(AutoSave.class);
+    private static final int QUEUE_SIZE = 2;
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File dir;
+    private final String save_name;
+    private final int keep;
+    private final ThreadPoolExecutor writer;
+    private int last_size = 1 << 20;
+
+    /**
+     * @param dir directory of autosaves
+     * @param save_name base name of autosaves
+     * @param keep number of autosaves to keep, at least one
+     */
+    public AutoSave(File dir, String save_name, int keep) {
+        if (keep < 1) {
+            throw new IllegalArgumentException("keep must be at least 1, was " + keep);
+        }
+        this.dir = dir;
+        this.save_name = save_name;
+        this.keep = keep;
+        writer = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+                    Thread t = new Thread(r, "AutoSave " + save_name);
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.DiscardOldestPolicy());
+        writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Snapshot game and queue the snapshot for writing. Must be called from
+     * the thread which runs the game, when no turn processing is in progress.
+     *
+     * @param game
+     */
+    public void submit(Game game) {
+        long start = System.nanoTime();
+        Snapshot.Captured snapshot;
+        try {
+            snapshot = Snapshot.capture(game, last_size + (last_size >> 3));
+        } catch (IOException ex) {
+            Util.logEx(null, ex, "Autosave snapshot failed");
+            return;
+        }
+        last_size = snapshot.size();
+        logger.debug("Autosave snapshot " + last_size + " bytes in " + (System.nanoTime() - start) / 1000000 + "ms");
+        writer.execute(() -> write(snapshot));
+    }
+
+    /**
+     * Write any queued snapshots and stop the writer thread.
+     */
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the file of the newest autosave, which exists once an autosave
+     * has been written
+     */
+    public File getLatest() {
+        return saveFile(0);
+    }
+
+    private File saveFile(int i) {
+        return new File(dir, save_name + "_" + i);
+    }
+
+    private void write(Snapshot.Captured snapshot) {
+        long start = System.nanoTime();
+        File tmp = new File(dir, save_name + TMP_SUFFIX);
+        try {
+            dir.mkdirs();
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                BufferedOutputStream buf = new BufferedOutputStream(out, 1 << 16);
+                snapshot.write(buf);
+                buf.flush();
+                out.getFD().sync();
+            }
+            Files.deleteIfExists(saveFile(keep - 1).toPath());
+            for (int i = keep - 2; i >= 0; i--) {
+                File f = saveFile(i);
+                if (f.exists()) {
+                    Files.move(f.toPath(), saveFile(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(tmp.toPath(), saveFile(0).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            logger.debug("Autosaved year " + snapshot.getYear() + " turn " + snapshot.getTurn() + " to " + saveFile(0)
+                    + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+        } catch (IOException ex) {
+            Util.logEx(null, ex, "Autosave failed");
+        }
+    }
+}
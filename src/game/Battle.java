@@ -32,6 +32,8 @@ import galaxyreader.Structure;
 import galaxyreader.Unit;
 import gui.CombatStrategyPanel;
 import java.awt.Point;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -42,6 +44,8 @@ import java.util.Set;
 import org.apache.commons.math3.util.FastMath;
 import util.C;
 import util.StackIterator;
+import util.TurnProfiler;
+import util.UnitStack;
 import util.Util;
 
 /**
@@ -67,14 +71,14 @@ public class Battle implements Serializable {
     private static final double GREEN_MOD = 0.8;
     private List<Unit> combat_stack_a;
     private List<Unit> combat_stack_b;
-    private List<Unit> defender_defence = new LinkedList<>();
-    private List<Unit> defender_offence = new LinkedList<>();
-    private List<Unit> defender_normal = new LinkedList<>();
-    private List<Unit> defender_persons = new LinkedList<>();
-    private List<Unit> attacker_offence = new LinkedList<>();
-    private List<Unit> attacker_defence = new LinkedList<>();
-    private List<Unit> attacker_normal = new LinkedList<>();
-    private List<Unit> attacker_assassins = new LinkedList<>();
+    private List<Unit> defender_defence = new UnitStack();
+    private List<Unit> defender_offence = new UnitStack();
+    private List<Unit> defender_normal = new UnitStack();
+    private List<Unit> defender_persons = new UnitStack();
+    private List<Unit> attacker_offence = new UnitStack();
+    private List<Unit> attacker_defence = new UnitStack();
+    private List<Unit> attacker_normal = new UnitStack();
+    private List<Unit> attacker_assassins = new UnitStack();
     private LinkedList<Hex> path;
     private String combat_type;
     private int attacked_faction;
@@ -93,6 +97,8 @@ public class Battle implements Serializable {
     private List<Hex> pts_queue;
     private int city_damage;
     private CombatStrategyPanel.Strategy strategy;
+    private transient CombatTrace trace = CombatTrace.NONE;
+    private transient boolean trace_set;
 
     public Battle() {
         
@@ -111,6 +117,30 @@ public class Battle implements Serializable {
         System.out.println(pts_queue.size());
     }
 
+    /**
+     * Create a Battle for simulated combat with BattleEstimator. It shares the
+     * rule tables and game of this battle but has its own random and working
+     * lists, is not traced and has no bombardment target, so doCombat() on it
+     * modifies only the units it is given.
+     *
+     * @param random
+     * @param combat_type
+     * @param strategy
+     * @return
+     */
+    Battle simulator(Random random, String combat_type, CombatStrategyPanel.Strategy strategy) {
+        Battle sim = new Battle();
+        sim.random = random;
+        sim.damage = damage;
+        sim.target = target;
+        sim.terr_cost = terr_cost;
+        sim.game = game;
+        sim.planets = planets;
+        sim.combat_type = combat_type;
+        sim.strategy = strategy;
+        return sim;
+    }
+
     public void perBattleInit(LinkedList<Hex> path, int current_planet) {
         this.path = path;
         this.current_planet = current_planet;
@@ -244,7 +274,7 @@ public class Battle implements Serializable {
         int dmg = 0;
         // the strength/armor ratio, start with armor effect
         double ratio = 1.0 / def.type_data.armor;
-        System.out.println("A/D ratio " + atk.type_data.abbrev + " -> " + def.type_data.abbrev + " after armor: " + ratio);
+        trace.ratio(atk, def, CombatTrace.RATIO_ARMOR, ratio);
         // adjust for combat orders
         switch (strategy) {
             case ASSAULT:
@@ -258,7 +288,7 @@ public class Battle implements Serializable {
             default:
                 throw new AssertionError();
         }
-        System.out.println("A/D ratio after orders (" + strategy.toString() + "): " + ratio);
+        trace.ratio(atk, def, CombatTrace.RATIO_ORDERS, ratio);
         // adjust for attacker xp
         if (game.getEfs_ini().experience_combat_effect) {
             switch (Unit.XP.values()[atk.experience]) {
@@ -273,7 +303,7 @@ public class Battle implements Serializable {
                 default:
                     throw new AssertionError();
             }
-            System.out.println("A/D ratio after atk xp (" + atk.experience + "): " + ratio);
+            trace.ratio(atk, def, CombatTrace.RATIO_ATK_XP, ratio);
             // adjust for defender xp
             switch (Unit.XP.values()[def.experience]) {
                 case ELITE:
@@ -287,7 +317,7 @@ public class Battle implements Serializable {
                 default:
                     throw new AssertionError();
             }
-            System.out.println("A/D ratio after def xp (" + def.experience + "): " + ratio);
+            trace.ratio(atk, def, CombatTrace.RATIO_DEF_XP, ratio);
         }
         // adjust for attack strength
         switch (atk_type) {
@@ -321,7 +351,7 @@ public class Battle implements Serializable {
             default:
                 throw new AssertionError();
         }
-        System.out.println("A/D ratio FINAL: " + ratio);
+        trace.ratio(atk, def, CombatTrace.RATIO_FINAL, ratio);
         int dmg_index = -1;
         // find damage index ... were you drunk when you did this ?
         if (ratio < 3) {
@@ -355,6 +385,7 @@ public class Battle implements Serializable {
         }
 
         dmg = damage[random.nextInt(10)][dmg_index];
+        trace.damage(atk, def, atk_type, dmg);
 
         return dmg;
 
@@ -488,7 +519,7 @@ public class Battle implements Serializable {
     }
 
     public void removeDead(List<Unit> stack) {
-        List<Unit> dead_list = new LinkedList<>();
+        List<Unit> dead_list = new UnitStack();
         for (Unit unit : stack) {
             // check for dead fighters aboard carriers
             for (Unit unit1 : unit.cargo_list) {
@@ -562,7 +593,7 @@ public class Battle implements Serializable {
         hex.getStack().add(unit);
         stack_b.remove(unit);
         // unspot and respot
-        List<Unit> stack = new LinkedList<>();
+        List<Unit> stack = new UnitStack();
         stack.add(unit);
         game.unSpot(stack);
         game.getHexProc().spotProc(hex, stack);
@@ -584,7 +615,7 @@ public class Battle implements Serializable {
      * @param stack_b defending stack.
      */
     public void retreatRouted(List<Unit> stack_a, List<Unit> stack_b) {
-        List<Unit> routed = new LinkedList<>();
+        List<Unit> routed = new UnitStack();
         for (Unit unit : stack_b) {
             if (unit.routed && unit.health > 0) {
                 routed.add(unit);
@@ -712,7 +743,7 @@ public class Battle implements Serializable {
             e = iterator.next();
         }
 
-        iterator = new StackIterator(defender);
+        iterator.reset(defender);
         e = iterator.next();
         while (e != null) {
             e.routed = false;
@@ -735,7 +766,7 @@ public class Battle implements Serializable {
         List<Unit> stack_a = game.getSelectedStack();
         List<Unit> stack_b = path.get(1).getStack();
 
-        List<Unit> attacker = new LinkedList<>();
+        List<Unit> attacker = new UnitStack();
         for (Unit unit : stack_a) {
             if (unit.isSelected() && unit.type_data.non_combat == 0
                     && unit.type_data.move_type != C.MoveType.JUMP
@@ -748,7 +779,7 @@ public class Battle implements Serializable {
         Util.sortRank(combat_stack_a);
         game.subMovePoints(attacker);
 
-        List<Unit> defender = new LinkedList<>();
+        List<Unit> defender = new UnitStack();
         for (Unit unit : stack_b) {
             if (unit.type_data.non_combat == 0
                     && unit.type_data.move_type != C.MoveType.JUMP
@@ -799,7 +830,7 @@ public class Battle implements Serializable {
         Planet planet = grid[p.x][p.y].parent_planet;
         stack_b = planet.space_stacks[attacked_faction];
 
-        List<Unit> attacker = new LinkedList<>();
+        List<Unit> attacker = new UnitStack();
         for (Unit unit : stack_a) {
             // if you change this change checkMoveLeftSpace also
             if (unit.isSelected() && unit.type_data.non_combat == 0) {
@@ -810,7 +841,7 @@ public class Battle implements Serializable {
         Util.sortRank(combat_stack_a);
         game.subMovePointsSpace(attacker);
 
-        List<Unit> defender = new LinkedList<>();
+        List<Unit> defender = new UnitStack();
         for (Unit unit : stack_b) {
             selectSpaceFightersB(unit, defender, false);
         }
@@ -830,7 +861,7 @@ public class Battle implements Serializable {
         List<Unit> stack_a = game.getSelectedStack();
         List<Unit> stack_b = ranged_space_target.getStack();
 
-        List<Unit> attacker = new LinkedList<>();
+        List<Unit> attacker = new UnitStack();
         for (Unit unit : stack_a) {
             if (unit.isSelected()) {
                 attacker.add(unit);
@@ -840,7 +871,7 @@ public class Battle implements Serializable {
         combat_stack_a = attacker;
         Util.sortRank(combat_stack_a);
 
-        List<Unit> defender = new LinkedList<>();
+        List<Unit> defender = new UnitStack();
         for (Unit unit : stack_b) {
 
             if (unit.type_data.ranged_sp_str > 0 || bombard) {
@@ -1017,6 +1048,9 @@ public class Battle implements Serializable {
      * @param defender defending stack.
      */
     public void doCombat(List<Unit> attacker, List<Unit> defender) {
+        if (this == game.getBattle()) { // not BattleEstimator simulations
+            TurnProfiler.count(TurnProfiler.Count.BATTLES);
+        }
 
         city_damage = 0;
         int[] defender_damage = new int[C.STACK_SIZE];
@@ -1049,6 +1083,7 @@ public class Battle implements Serializable {
             default:
                 throw new AssertionError();
         }
+        trace.begin(game, combat_type, strategy, attacker, defender);
         fight:
         for (int k = 0; k < combat_loop_iter; k++) {
             for (int i = 0; i < combat_phases.length; i++) {
@@ -1085,7 +1120,8 @@ public class Battle implements Serializable {
 
             }
         }
-        if (combat_type.equals(C.BOMBARD_COMBAT)) {
+        trace.end(attacker, defender);
+        if (combat_type.equals(C.BOMBARD_COMBAT) && ranged_space_target != null) {
             Structure s = ranged_space_target.getStructure();
             if (s != null) {
                 s.health -= city_damage;
@@ -1152,4 +1188,29 @@ public class Battle implements Serializable {
         this.strategy = strategy;
     }
 
+    public CombatTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @param trace receiver of combat events, CombatTrace.NONE for no tracing
+     */
+    public void setTrace(CombatTrace trace) {
+        this.trace = trace;
+        trace_set = true;
+    }
+
+    /**
+     * @return true iff a trace has been set, even if it was CombatTrace.NONE
+     */
+    public boolean isTraceSet() {
+        return trace_set;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        trace = CombatTrace.NONE;
+        trace_set = false;
+    }
+
 }
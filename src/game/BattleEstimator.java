@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package game;
+
+import galaxyreader.Unit;
+import gui.CombatStrategyPanel;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import util.C;
+import util.UnitStack;
+import util.Util;
+
+/**
+ * Estimates the outcome of a battle by fighting it repeatedly with the rules
+ * of Battle.doCombat() on copies of the combat units. The real units and the
+ * game are not modified, so the AI may ask "should I attack" and balance
+ * changes may be measured without playing games.
+ * <p>
+ * Trials run in parallel on the common ForkJoinPool. Each trial has its own
+ * seed drawn from the seed given to estimate(), so results do not depend on
+ * how trials are spread over threads.
+ *
+ * @author joulupunikki
+ */
+public class BattleEstimator {
+
+    // trials per parallel task, each task copies the stacks once
+    private static final int CHUNK = 64;
+    private final Battle battle;
+
+    /**
+     * @param battle battle whose rule tables and game are used
+     */
+    public BattleEstimator(Battle battle) {
+        this.battle = battle;
+    }
+
+    /**
+     * Result of estimate(), averages are per trial.
+     */
+    public static class Estimate {
+
+        public final int trials;
+        /**
+         * Fraction of trials where all defenders were killed or routed while
+         * some attacker was left standing.
+         */
+        public final double win_probability;
+        public final double atk_units_lost;
+        public final double def_units_lost;
+        public final double atk_health_lost;
+        public final double def_health_lost;
+
+        Estimate(int trials, int wins, long atk_units_lost, long def_units_lost,
+                long atk_health_lost, long def_health_lost) {
+            this.trials = trials;
+            double n = Math.max(1, trials);
+            this.win_probability = wins / n;
+            this.atk_units_lost = atk_units_lost / n;
+            this.def_units_lost = def_units_lost / n;
+            this.atk_health_lost = atk_health_lost / n;
+            this.def_health_lost = def_health_lost / n;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("win %.3f, lost %.2f/%.2f units, %.1f/%.1f health (%d trials)",
+                    win_probability, atk_units_lost, def_units_lost, atk_health_lost, def_health_lost, trials);
+        }
+    }
+
+    /**
+     * Units of stack which take part in ground combat, chosen as in
+     * Battle.resolveGroundBattleInit().
+     *
+     * @param stack
+     * @return
+     */
+    public static List<Unit> groundCombatUnits(List<Unit> stack) {
+        List<Unit> rv = new UnitStack();
+        for (Unit unit : stack) {
+            if (unit.type_data.non_combat == 0
+                    && unit.type_data.move_type != C.MoveType.JUMP
+                    && unit.type_data.move_type != C.MoveType.SPACE) {
+                rv.add(unit);
+            }
+        }
+        Util.sortRank(rv);
+        return rv;
+    }
+
+    /**
+     * Fight trials battles between copies of attacker and defender.
+     *
+     * @param combat_type one of C.GROUND_COMBAT etc.
+     * @param strategy combat orders of the attacker
+     * @param attacker combat units of the attacker, not modified
+     * @param defender combat units of the defender, not modified
+     * @param trials number of battles to fight
+     * @param seed seed of the trial random streams
+     * @return
+     */
+    public Estimate estimate(String combat_type, CombatStrategyPanel.Strategy strategy,
+            List<Unit> attacker, List<Unit> defender, int trials, long seed) {
+        if (attacker.isEmpty() || defender.isEmpty() || trials <= 0) {
+            return new Estimate(0, 0, 0, 0, 0, 0);
+        }
+        long[] seeds = new long[trials];
+        SplittableRandom seeder = new SplittableRandom(seed);
+        for (int i = 0; i < trials; i++) {
+            seeds[i] = seeder.nextLong();
+        }
+        Unit[] atk = attacker.toArray(new Unit[attacker.size()]);
+        Unit[] def = defender.toArray(new Unit[defender.size()]);
+        // per trial results, summed in trial order afterwards
+        boolean[] won = new boolean[trials];
+        int[][] lost = new int[4][trials];
+        IntStream.range(0, (trials + CHUNK - 1) / CHUNK).parallel().forEach(c -> {
+            Random random = new Random();
+            Battle sim = battle.simulator(random, combat_type, strategy);
+            List<Unit> atk_copy = copy(atk);
+            List<Unit> def_copy = copy(def);
+            for (int t = c * CHUNK; t < Math.min(trials, (c + 1) * CHUNK); t++) {
+                random.setSeed(seeds[t]);
+                reset(atk, atk_copy);
+                reset(def, def_copy);
+                sim.doCombat(atk_copy, def_copy);
+                won[t] = sim.checkRoutedKilled(def_copy) && !sim.checkRoutedKilled(atk_copy);
+                lost[0][t] = unitsLost(atk_copy);
+                lost[1][t] = unitsLost(def_copy);
+                lost[2][t] = healthLost(atk, atk_copy);
+                lost[3][t] = healthLost(def, def_copy);
+            }
+        });
+        int wins = 0;
+        long[] sums = new long[4];
+        for (int t = 0; t < trials; t++) {
+            wins += won[t] ? 1 : 0;
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += lost[i][t];
+            }
+        }
+        return new Estimate(trials, wins, sums[0], sums[1], sums[2], sums[3]);
+    }
+
+    /**
+     * Copy the fields of units which doCombat() reads. Cargo is not copied,
+     * carried units fight as separate combat units.
+     */
+    private static List<Unit> copy(Unit[] units) {
+        List<Unit> rv = new UnitStack();
+        for (Unit unit : units) {
+            Unit e = new Unit(unit.p_idx, unit.x, unit.y, unit.owner);
+            e.prev_owner = unit.prev_owner;
+            e.type = unit.type;
+            e.t_lvl = unit.t_lvl;
+            e.move_type = unit.move_type;
+            e.type_data = unit.type_data;
+            e.experience = unit.experience;
+            e.loyalty = unit.loyalty;
+            e.in_space = unit.in_space;
+            System.arraycopy(unit.spotted, 0, e.spotted, 0, e.spotted.length);
+            rv.add(e);
+        }
+        return rv;
+    }
+
+    /**
+     * Restore the copies to the pre battle state of units.
+     */
+    private static void reset(Unit[] units, List<Unit> copies) {
+        for (int i = 0; i < units.length; i++) {
+            Unit e = copies.get(i);
+            e.health = units[i].health;
+            e.health_tmp = units[i].health;
+            e.move_points = units[i].move_points;
+            e.routed = false;
+        }
+    }
+
+    private static int unitsLost(List<Unit> copies) {
+        int rv = 0;
+        for (Unit e : copies) {
+            rv += e.health_tmp <= 0 ? 1 : 0;
+        }
+        return rv;
+    }
+
+    private static int healthLost(Unit[] units, List<Unit> copies) {
+        int rv = 0;
+        for (int i = 0; i < units.length; i++) {
+            rv += units[i].health - Math.max(0, copies.get(i).health_tmp);
+        }
+        return rv;
+    }
+}
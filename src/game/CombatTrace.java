@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package game;
+
+import galaxyreader.Unit;
+import gui.CombatStrategyPanel;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Receives structured events from Battle as combat is resolved. The default
+ * NONE discards everything, so combat does no tracing work unless a trace is
+ * set with Battle.setTrace(). Events carry only references and primitives so
+ * calling the no-op trace allocates nothing.
+ * <p>
+ * Events of one battle are begin(), then ratio() and damage() for each hit,
+ * then end().
+ *
+ * @author joulupunikki
+ */
+public interface CombatTrace {
+
+    /**
+     * Steps of the attack/defence ratio calculation in Battle.getDam().
+     */
+    int RATIO_ARMOR = 0;
+    int RATIO_ORDERS = 1;
+    int RATIO_ATK_XP = 2;
+    int RATIO_DEF_XP = 3;
+    int RATIO_FINAL = 4;
+
+    CombatTrace NONE = new None();
+    String LOG = "log";
+
+    /**
+     * Battle is about to be fought.
+     *
+     * @param game
+     * @param combat_type one of C.GROUND_COMBAT etc.
+     * @param strategy combat orders of the attacker
+     * @param attacker attacking stack
+     * @param defender defending stack
+     */
+    void begin(Game game, String combat_type, CombatStrategyPanel.Strategy strategy, List<Unit> attacker, List<Unit> defender);
+
+    /**
+     * Attack/defence ratio after calculation step.
+     *
+     * @param atk
+     * @param def
+     * @param step one of RATIO_ARMOR etc.
+     * @param ratio
+     */
+    void ratio(Unit atk, Unit def, int step, double ratio);
+
+    /**
+     * Attack hit.
+     *
+     * @param atk
+     * @param def
+     * @param atk_type one of C.WATER etc.
+     * @param dmg damage done
+     */
+    void damage(Unit atk, Unit def, int atk_type, int dmg);
+
+    /**
+     * Battle has been fought, health_tmp and routed of units hold the result.
+     *
+     * @param attacker
+     * @param defender
+     */
+    void end(List<Unit> attacker, List<Unit> defender);
+
+    /**
+     * No more battles will be traced, release resources.
+     */
+    void close();
+
+    /**
+     * Create a trace from the value of C.OPT_COMBAT_TRACE: LOG logs events
+     * with log4j, anything else is the name of a binary event log file.
+     *
+     * @param arg
+     * @return
+     */
+    static CombatTrace create(String arg) {
+        if (arg == null) {
+            return NONE;
+        }
+        if (arg.equals(LOG)) {
+            return new LogTrace();
+        }
+        try {
+            return new FileTrace(arg);
+        } catch (IOException ex) {
+            LogManager.getLogger(CombatTrace.class).error("Cannot open combat trace " + arg, ex);
+            return NONE;
+        }
+    }
+
+    class None implements CombatTrace {
+
+        private None() {
+        }
+
+        @Override
+        public void begin(Game game, String combat_type, CombatStrategyPanel.Strategy strategy, List<Unit> attacker, List<Unit> defender) {
+        }
+
+        @Override
+        public void ratio(Unit atk, Unit def, int step, double ratio) {
+        }
+
+        @Override
+        public void damage(Unit atk, Unit def, int atk_type, int dmg) {
+        }
+
+        @Override
+        public void end(List<Unit> attacker, List<Unit> defender) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Logs events at debug level, in the format combat used to print to
+     * standard output.
+     */
+    class LogTrace implements CombatTrace {
+
+        private static final Logger logger = LogManager.getLogger(CombatTrace.class);
+        private static final String[] STEPS = {"after armor", "after orders", "after atk xp", "after def xp", "FINAL"};
+        private CombatStrategyPanel.Strategy strategy;
+
+        @Override
+        public void begin(Game game, String combat_type, CombatStrategyPanel.Strategy strategy, List<Unit> attacker, List<Unit> defender) {
+            this.strategy = strategy;
+            if (!logger.isDebugEnabled()) {
+                return;
+            }
+            logger.debug(combat_type + " combat, year " + game.getYear() + ", " + attacker.size() + " attackers, " + defender.size() + " defenders");
+        }
+
+        @Override
+        public void ratio(Unit atk, Unit def, int step, double ratio) {
+            if (!logger.isDebugEnabled()) {
+                return;
+            }
+            switch (step) {
+                case RATIO_ARMOR:
+                    logger.debug("A/D ratio " + atk.type_data.abbrev + " -> " + def.type_data.abbrev + " after armor: " + ratio);
+                    break;
+                case RATIO_ORDERS:
+                    logger.debug("A/D ratio after orders (" + strategy + "): " + ratio);
+                    break;
+                case RATIO_ATK_XP:
+                    logger.debug("A/D ratio after atk xp (" + atk.experience + "): " + ratio);
+                    break;
+                case RATIO_DEF_XP:
+                    logger.debug("A/D ratio after def xp (" + def.experience + "): " + ratio);
+                    break;
+                default:
+                    logger.debug("A/D ratio " + STEPS[step] + ": " + ratio);
+                    break;
+            }
+        }
+
+        @Override
+        public void damage(Unit atk, Unit def, int atk_type, int dmg) {
+            if (!logger.isDebugEnabled()) {
+                return;
+            }
+            logger.debug("Damage " + atk.type_data.abbrev + " -> " + def.type_data.abbrev + ": " + dmg);
+        }
+
+        @Override
+        public void end(List<Unit> attacker, List<Unit> defender) {
+            logger.debug("Combat over");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Writes events to a binary file, one record per event. All records start
+     * with a tag byte.
+     * <pre>
+     * BEGIN  UTF combat type, short year, byte turn, UTF strategy, then for
+     *        attacker and defender: byte count, count * (short type,
+     *        byte t_lvl, byte owner, byte experience, short health)
+     * DAMAGE byte atk_type, byte atk owner, short atk type, short def type,
+     *        float final ratio, short damage
+     * END    for attacker and defender: byte count,
+     *        count * (short health_tmp, boolean routed)
+     * </pre> The file is flushed after each battle.
+     */
+    class FileTrace implements CombatTrace {
+
+        public static final byte BEGIN = 1;
+        public static final byte DAMAGE = 2;
+        public static final byte END = 3;
+        private final DataOutputStream out;
+        private final String file_name;
+        private boolean failed;
+        private float ratio;
+
+        public FileTrace(String file_name) throws IOException {
+            this.file_name = file_name;
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file_name)));
+        }
+
+        @Override
+        public void begin(Game game, String combat_type, CombatStrategyPanel.Strategy strategy, List<Unit> attacker, List<Unit> defender) {
+            try {
+                out.writeByte(BEGIN);
+                out.writeUTF(combat_type);
+                out.writeShort(game.getYear());
+                out.writeByte(game.getTurn());
+                out.writeUTF(String.valueOf(strategy));
+                writeUnits(attacker);
+                writeUnits(defender);
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+
+        private void writeUnits(List<Unit> stack) throws IOException {
+            out.writeByte(stack.size());
+            for (Unit unit : stack) {
+                out.writeShort(unit.type);
+                out.writeByte(unit.t_lvl);
+                out.writeByte(unit.owner);
+                out.writeByte(unit.experience);
+                out.writeShort(unit.health);
+            }
+        }
+
+        @Override
+        public void ratio(Unit atk, Unit def, int step, double ratio) {
+            if (step == RATIO_FINAL) {
+                this.ratio = (float) ratio;
+            }
+        }
+
+        @Override
+        public void damage(Unit atk, Unit def, int atk_type, int dmg) {
+            try {
+                out.writeByte(DAMAGE);
+                out.writeByte(atk_type);
+                out.writeByte(atk.owner);
+                out.writeShort(atk.type);
+                out.writeShort(def.type);
+                out.writeFloat(ratio);
+                out.writeShort(dmg);
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+
+        @Override
+        public void end(List<Unit> attacker, List<Unit> defender) {
+            try {
+                out.writeByte(END);
+                writeResult(attacker);
+                writeResult(defender);
+                out.flush();
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+
+        private void writeResult(List<Unit> stack) throws IOException {
+            out.writeByte(stack.size());
+            for (Unit unit : stack) {
+                out.writeShort(unit.health_tmp);
+                out.writeBoolean(unit.routed);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+
+        /**
+         * Log only the first failure, combat continues untraced.
+         */
+        private void fail(IOException ex) {
+            if (!failed) {
+                failed = true;
+                LogManager.getLogger(CombatTrace.class).error("Combat trace " + file_name + " write failed", ex);
+            }
+        }
+    }
+}
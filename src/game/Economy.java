@@ -36,15 +36,13 @@ import dat.ResType;
 import galaxyreader.Planet;
 import galaxyreader.Structure;
 import galaxyreader.Unit;
-import gui.Gui;
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 import org.apache.commons.math3.util.FastMath;
 import util.C;
+import util.HexRings;
 import util.StackIterator;
 import util.Util;
 
@@ -91,7 +89,7 @@ public class Economy implements Serializable {
 //        testPrintProdTable();
 //        testPrintHarvestTable();
 //        testPrintResTypeTable();
-        this.do_print = Gui.getMainArgs().hasOption(C.OPT_ECONOMY_PRINT);
+        this.do_print = game.getMainArgs().hasOption(C.OPT_ECONOMY_PRINT);
     }
 
     public ResType[] getResType() {
@@ -148,19 +146,16 @@ public class Economy implements Serializable {
      */
     private void regainHealth() {
 
-        for (Structure city : structures) {
-            if (city.owner == turn) {
-                game.adjustCityHealth(city, Math.min(city.health + efs_ini.city_heal_rate, 100));
-            }
+        AssetIndex index = game.getAssetIndex();
+        for (Structure city : index.getStructures(turn)) {
+            game.adjustCityHealth(city, Math.min(city.health + efs_ini.city_heal_rate, 100));
         }
 
-        for (Unit unit : units) {
-            if (unit.owner == turn) {
-                if (game.unitInCity(unit)) {
-                    unit.health = Math.min(unit.health + efs_ini.unit_heal_in_city, 100);
-                } else {
-                    unit.health = Math.min(unit.health + efs_ini.unit_heal, 100);
-                }
+        for (Unit unit : index.getUnits(turn)) {
+            if (game.unitInCity(unit)) {
+                unit.health = Math.min(unit.health + efs_ini.unit_heal_in_city, 100);
+            } else {
+                unit.health = Math.min(unit.health + efs_ini.unit_heal, 100);
             }
         }
     }
@@ -174,6 +169,7 @@ public class Economy implements Serializable {
      */
     private void feedUnitsAndCities() {
 
+        StackIterator iter2 = new StackIterator();    // Reused for all stacks
         for (Planet planet : planets) {    // For each planet
 
             List<Unit> dead_units = new LinkedList<>();
@@ -208,7 +204,7 @@ public class Economy implements Serializable {
 
                 // Feed any units in the hex's stack (if they have the right owner)
                 List<Unit> stack = hex.getStack();
-                StackIterator iter2 = new StackIterator(stack);
+                iter2.reset(stack);
                 for (Unit unit = iter2.next(); unit != null; unit = iter2.next()) {    // For each unit in stack (including cargo)
                     if (unit.prev_owner == turn && unit.type_data.eat && !unit.in_space) {    // Unit needs feeding
                         food_needed += 1;
@@ -263,12 +259,7 @@ public class Economy implements Serializable {
 
         int[] resource_amounts;    // Resources of each type
 
-        List<Structure> cities = new LinkedList<>();
-        for (Structure city : structures) {    // For each structure in structure list
-            if (city.owner == turn) {          // Current faction only
-                cities.add(city);
-            }
-        }
+        List<Structure> cities = game.getAssetIndex().getStructures(turn);    // Current faction only
         // produce in order so that prerequisite resources are produced first
         for (int i : C.PRODUCTION_ORDER) {
             for (Structure city : cities) {
@@ -384,8 +375,10 @@ public class Economy implements Serializable {
 
         int radius = 2;    // TEMPORARY - should get from STRBUILD.DAT
 
-        Set<Hex> hex_set = getHexesWithinRadiusOf(city_hex, radius);    // Get the set of all hexes within 2 hexes of the city
-        for (Hex hex : hex_set) {    // For each hex in the set
+        int[] ring = HexRings.within(city_hex.getHexIdx());    // Hexes ordered by distance from the city
+        int hexes = HexRings.count(city_hex.getHexIdx(), radius);    // The first hexes are those within 2 hexes of the city
+        for (int k = 0; k < hexes; k++) {    // For each hex within the city radius
+            Hex hex = planet.planet_grid.getHex(ring[k]);
 
             // Get resources from terrain
             boolean[] terrain_array = hex.getTerrain();    // Get boolean array of terrain types for the hex
@@ -418,7 +411,6 @@ public class Economy implements Serializable {
         for (int i = 0; i < resource_amounts.length; i++) {    // For each resource type
             int resource_amount = resource_amounts[i];
             if (resource_amount > 0) {
-                int hexes = hex_set.size();
                 int max_hexes = 3 * radius * (radius + 1) + 1;
                 if (hexes < max_hexes) {
                     resource_amounts[i] = (int) Math.ceil((float) resource_amount * max_hexes / hexes);    // Round up
@@ -427,9 +419,9 @@ public class Economy implements Serializable {
         }
 
         // Add resources from any special resource symbols
-        for (Hex hex : hex_set) {    // For each hex within the city radius
+        for (int k = 0; k < hexes; k++) {    // For each hex within the city radius
 
-            Structure special = hex.getResource();
+            Structure special = planet.planet_grid.getHex(ring[k]).getResource();
 
             if (special != null) {
                 switch (special.type) {
@@ -532,52 +524,6 @@ public class Economy implements Serializable {
         return resource_amounts;
     }
 
-    /**
-     * Find and return the set of all hexes within a certain radius of a given
-     * hex.
-     *
-     * Typically this is called with radius 2, for harvesting cities, in which
-     * case it returns a set of 17 hexes (unless the radius extends off the top
-     * or bottom of the map.
-     *
-     * @param hex The central hex
-     * @param radius The distance in hexes to extend the search
-     * @return Set of hexes within the radius
-     *
-     */
-    public Set<Hex> getHexesWithinRadiusOf(Hex hex, int radius) {
-
-        // Find the neighbours of the given hex, and then the neighbours of those neighbours, etc. 
-        // To avoid adding the same hex more than once, use Set instead of List, as that leaves it
-        // to the JRE to avoid duplicates 
-        Set<Hex> ret_val = new HashSet<>();    // Set of hexes to be returned 
-        LinkedList<Hex> queue = new LinkedList<>();
-        LinkedList<Integer> queueR = new LinkedList<>();
-
-        ret_val.add(hex);
-        if (radius < 1) {
-            return ret_val;
-        }
-
-        queue.add(hex);
-        queueR.add(new Integer(0));
-        while (!queue.isEmpty()) {
-            Hex father = queue.pop();
-            int r = queueR.pop().intValue();
-            Hex[] neighbours = father.getNeighbours();
-            for (Hex child : neighbours) {
-                if (child != null && ret_val.add(child)) {
-                    int child_r = r + 1;
-                    if (child_r < radius) {
-                        queue.add(child);
-                        queueR.add(new Integer(child_r));
-                    }
-                }
-            }
-        }
-        return ret_val;
-    }
-
     // ================================================================================
     //
     //          METHODS BELOW THIS LINE ARE ONLY FOR TESTING
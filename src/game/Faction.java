@@ -167,16 +167,21 @@ public class Faction implements Serializable {
         for (int i = 0; i < no_nobles.length; i++) {
             if (no_nobles[i] ^ prev_no_nobles[i]) {
                 game.getFaction(i).setEliminated();
+                AssetIndex index = game.getAssetIndex();
                 for (Unit unit : units) {
                     if (unit.prev_owner == i) {
+                        index.unitChanging(unit);
                         unit.prev_owner = C.NEUTRAL;
                         unit.owner = C.NEUTRAL;
+                        index.unitChanged(unit);
                     }
                 }
                 for (Structure city : cities) {
                     if (city.prev_owner == i) {
+                        index.structureChanging(city);
                         city.prev_owner = C.NEUTRAL;
                         city.owner = C.NEUTRAL;
+                        index.structureChanged(city);
                     }
                 }
             }
@@ -209,15 +214,15 @@ public class Faction implements Serializable {
      */
     public int calculateGDP() {
         int pop = 0;
-        List<Structure> all_cities = game.getStructures();
+        AssetIndex index = game.getAssetIndex();
         boolean[] rules = new boolean[game.getPlanets().size()];
-        for (Structure s : all_cities) {
-            if (s.type == C.PALACE && s.owner == game.getTurn()) {
+        for (Structure s : index.getStructures(game.getTurn())) {
+            if (s.type == C.PALACE) {
                 rules[s.p_idx] = true;
             }
         }
-        for (Structure s : all_cities) {
-            if (s.prev_owner == number && rules[s.p_idx]) {
+        for (Structure s : index.getStructuresByPrevOwner(number)) {
+            if (rules[s.p_idx]) {
                 pop += s.health;
             }
         }
@@ -232,11 +237,8 @@ public class Faction implements Serializable {
      */
     public int calculateUnitPay() {
         int pay = 0;
-        List<Unit> all_units = game.getUnits();
-        for (Unit u : all_units) {
-            if (u.prev_owner == number) {
-                pay += u.type_data.crd_trn;
-            }
+        for (Unit u : game.getAssetIndex().getUnitsByPrevOwner(number)) {
+            pay += u.type_data.crd_trn;
         }
         return pay;
     }
@@ -515,6 +517,7 @@ public class Faction implements Serializable {
             game.relocateUnit(false, unit.p_idx, target.getX(), target.getY(), unit);
             target.addUnit(unit);
             game.getUnits().add(unit);
+            game.getAssetIndex().addUnit(unit);
             //Util.dP(" hex " + target.getX() + "," + target.getY());
         }
         spot(target, prev_target);
@@ -29,7 +29,6 @@
 package game;
 
 import ai.AIObject;
-import ai.StaticThreads;
 import com.github.joulupunikki.math.random.XorShift1024Star;
 import dat.Damage;
 import dat.EfsIni;
@@ -44,9 +43,9 @@ import galaxyreader.Planet;
 import galaxyreader.Structure;
 import galaxyreader.Unit;
 import gui.CombatStrategyPanel;
-import gui.Gui;
 import gui.Resource;
 import java.awt.Point;
+import java.io.File;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -56,11 +55,16 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Properties;
 import java.util.Random;
-import java.util.Set;
+import org.apache.commons.cli.CommandLine;
 import org.apache.commons.math3.random.RandomAdaptor;
 import util.C;
+import util.FN;
+import util.HexRings;
 import util.StackIterator;
+import util.TurnProfiler;
+import util.UnitStack;
 import util.Util;
 import util.Util.HexIter;
 
@@ -137,8 +141,17 @@ public class Game implements Serializable {
     private Diplomacy diplomacy;
 
     private AIObject ai;
-
-    public Game(String galaxy_file, int current_planet) {
+    private transient AutoSave auto_save;
+    // year of the last autosave, 0 if none yet
+    private transient int auto_save_year;
+    private transient AssetIndex asset_index;
+    private transient TurnProgress turn_progress;
+    private transient TurnProfiler profiler;
+    // command line options in effect, reset by the launcher after each load
+    private CommandLine main_args;
+
+    public Game(String galaxy_file, int current_planet, CommandLine main_args) {
+        this.main_args = main_args;
 
         random = RandomAdaptor.createAdaptor(new XorShift1024Star(1L));
 
@@ -190,23 +203,22 @@ public class Game implements Serializable {
     }
 
     public void initAI(boolean dynamic) {
-        if (!Gui.getMainArgs().hasOption(C.OPT_ENABLE_AI)) {
+        if (!main_args.hasOption(C.OPT_ENABLE_AI)) {
             return;
         }
-        for (Planet planet : planets) { // fast serial
+        for (Planet planet : planets) {
             planet.planet_grid.serialSetAIDataStructures(planet);
         }
-        StaticThreads.dispatchStaticAIWorker(planets); // slow parallel
         if (!dynamic) {
             return;
         }
-//        if (!Gui.getMainArgs().hasOption(C.OPT_ENABLE_AI)) {
+//        if (!main_args.hasOption(C.OPT_ENABLE_AI)) {
 //            return;
 //        }
         ai = new AIObject();
         ai.adAI(this, C.LEAGUE);
         ai.adAI(this, C.THE_CHURCH);
-        if (!Gui.getMainArgs().hasOption(C.OPT_AI_TEST)) {
+        if (!main_args.hasOption(C.OPT_AI_TEST)) {
             return;
         }
         ai.adAI(this, C.SYMBIOT);
@@ -226,10 +238,23 @@ public class Game implements Serializable {
     }
 
     public void init(Resource gui_resource) {
+        init(gui_resource.getEFSIni(), gui_resource.getPhoenixIni());
+    }
+
+    /**
+     * Initialize the parts of game state which depend on EFS.INI and
+     * PHOENIX.INI. Does not need any GUI resources so may be used when running
+     * without a GUI.
+     *
+     * @param efs_ini_props contents of EFS.INI
+     * @param phoenix_ini_props contents of PHOENIX.INI
+     */
+    public void init(Properties efs_ini_props, Properties phoenix_ini_props) {
 
         battle.battleInit(random, damage, target, terr_cost, this, planets);
+        initCombatTrace();
 
-        efs_ini = EfsIni.readEfsIni(gui_resource.getEFSIni(), gui_resource.getPhoenixIni());
+        efs_ini = EfsIni.readEfsIni(efs_ini_props, phoenix_ini_props);
         Target.setLanderVulnerability(target, efs_ini);
         resources = new Resources(this);
         economy = new Economy(this, resources);
@@ -244,12 +269,7 @@ public class Game implements Serializable {
     public void initVisibilitySpot(boolean do_reset) {
         if (do_reset) {
             for (Planet planet : planets) {
-                Hex[][] planet_grid = planet.planet_grid.getMapArray();
-                for (int i = 0; i < planet_grid.length; i++) {
-                    for (int j = 0; j < planet_grid[i].length; j++) {
-                        planet_grid[i][j].initVisibility();
-                    }
-                }
+                planet.planet_grid.getVisibility().reset();
             }
         }
 //        for (Structure structure : structures) {
@@ -319,6 +339,7 @@ public class Game implements Serializable {
 
     public void deleteUnit2(Unit u) {
         units.remove(u);
+        getAssetIndex().removeUnit(u);
         unmoved_units.remove(u);
     }
 
@@ -540,24 +561,94 @@ public class Game implements Serializable {
         return year;
     }
 
+    /**
+     * Start game, advance turns until it is a human player's turn. If no
+     * faction is human controlled only the first faction turn is processed.
+     */
     public void beginGame() {
-        advanceTurn();
-        while (!human_ctrl[turn]) {
+        getProfiler().bind();
+        try {
             advanceTurn();
+            if (!humanPlayerPresent()) {
+                return;
+            }
+            while (!human_ctrl[turn]) {
+                advanceTurn();
+            }
+        } finally {
+            TurnProfiler.unbind();
         }
-
     }
 
+    /**
+     * End current turn, advance turns until it is a human player's turn. If no
+     * faction is human controlled, as in headless simulation runs, only one
+     * faction turn is processed per call.
+     */
     public void endTurn() {
-        endTurnHousekeeping();
-        advanceTurn();
-        while (!human_ctrl[turn] || factions[turn].isEliminated() || (year - C.STARTING_YEAR < 1000 && Gui.getMainArgs().hasOption(C.OPT_AI_TEST) && !ai.isMapped(C.SYMBIOT, 17) && !ai.isMapped(C.SYMBIOT, 18) && !ai.isMapped(C.SYMBIOT, 19) && !ai.isMapped(C.SYMBIOT, 20))) {
+        getProfiler().bind();
+        try {
             endTurnHousekeeping();
             advanceTurn();
+            // without human players only one faction turn is processed per call
+            if (humanPlayerPresent()) {
+                while (!human_ctrl[turn] || factions[turn].isEliminated() || (year - C.STARTING_YEAR < 1000 && main_args.hasOption(C.OPT_AI_TEST) && !ai.isMapped(C.SYMBIOT, 17) && !ai.isMapped(C.SYMBIOT, 18) && !ai.isMapped(C.SYMBIOT, 19) && !ai.isMapped(C.SYMBIOT, 20))) {
+                    endTurnHousekeeping();
+                    advanceTurn();
+                }
+            }
+        } finally {
+            TurnProfiler.unbind();
+        }
+        autoSave();
+    }
+
+    /**
+     * Queue an autosave if autosaving is enabled with C.OPT_AUTOSAVE and none
+     * has been queued this year. Once a year is enough for recovery, and
+     * headless runs, which end one faction turn per call, would otherwise
+     * serialize the game for every faction. Unless set with setAutoSave()
+     * autosaves go to the save directory.
+     */
+    private void autoSave() {
+        if (auto_save_year == year) {
+            return;
+        }
+        if (auto_save == null) {
+            if (!main_args.hasOption(C.OPT_AUTOSAVE)) {
+                return;
+            }
+            auto_save = new AutoSave(new File(FN.S_SAVE_PATH), FN.S_AUTOSAVE_NAME,
+                    Integer.parseInt(main_args.getOptionValue(C.OPT_AUTOSAVE)));
+        }
+        auto_save_year = year;
+        auto_save.submit(this);
+    }
+
+    /**
+     * @param auto_save autosaver to use at end of turn, or null to autosave
+     * as set by command line options
+     */
+    public void setAutoSave(AutoSave auto_save) {
+        this.auto_save = auto_save;
+    }
+
+    /**
+     * @param turn_progress receiver of endTurn() progress, or null for none
+     */
+    public void setTurnProgress(TurnProgress turn_progress) {
+        this.turn_progress = turn_progress;
+    }
+
+    private void reportProgress(TurnProgress.Phase phase) {
+        if (turn_progress != null) {
+            turn_progress.phase(year, turn, phase);
         }
     }
 
     private void endTurnHousekeeping() {
+        reportProgress(TurnProgress.Phase.HOUSEKEEPING);
+        long time = TurnProfiler.start();
         setFactionCities(); // FIX #52
         for (Structure faction_city : faction_cities) {
             if (faction_city.on_hold_no_res) {
@@ -566,6 +657,7 @@ public class Game implements Serializable {
         }
         factions[turn].deleteOldMessages();
         diplomacy.sendContracts();
+        TurnProfiler.end(TurnProfiler.Span.HOUSEKEEPING, time);
     }
 
     public void advanceTurn() {
@@ -574,6 +666,8 @@ public class Game implements Serializable {
         } else {
             turn++;
         }
+        reportProgress(TurnProgress.Phase.ECONOMY);
+        long time = TurnProfiler.start();
         if (turn < C.NR_HOUSES) {
             factions[turn].adjustLoyalty();
         }
@@ -581,26 +675,40 @@ public class Game implements Serializable {
 
 //        factions[turn].deleteOldMessages(year);
         setFactionCities();
+        time = profile(TurnProfiler.Span.ECONOMY, time);
+        reportProgress(TurnProgress.Phase.RESEARCH);
         doResearch();
+        time = profile(TurnProfiler.Span.RESEARCH, time);
+        reportProgress(TurnProgress.Phase.BUILD);
         buildUnits();
+        time = profile(TurnProfiler.Span.BUILD, time);
 
         resetUnmovedUnits(true);
         resetMovePoints();
+        time = profile(TurnProfiler.Span.RESET_UNITS, time);
         setMaxSpotRange();
+        time = profile(TurnProfiler.Span.SPOT_RANGE, time);
         cargo_pods = Util.getCargoPods(units, this);
+        time = profile(TurnProfiler.Span.CARGO_PODS, time);
         if (regency.needToVote(turn, efs_ini, year + 1, Regency.VoteCheck.ADVANCE)) { // election notice
             factions[turn].addMessage(new Message("Regent elections will happen next turn.", C.Msg.ELECTION_NOTICE, year, null));
         }
-        if (Gui.getMainArgs().hasOption(C.OPT_ENABLE_AI) && !human_ctrl[turn] && ai.isAIcontrolled(turn)) {
-            while (!StaticThreads.isStaticDone()) {
-                try {
-                    System.out.println("Waiting for static AI.");
-                    Thread.sleep(1000);
-                } catch (InterruptedException ex) {
-                }
-            }
+        if (main_args.hasOption(C.OPT_ENABLE_AI) && !human_ctrl[turn] && ai.isAIcontrolled(turn)) {
+            reportProgress(TurnProgress.Phase.AI);
             ai.doTurn(turn);
+            profile(TurnProfiler.Span.AI, time);
         }
+        getProfiler().endFactionTurn(year, turn);
+    }
+
+    /**
+     * End span started at time and start the next one.
+     *
+     * @return start time of the next span
+     */
+    private static long profile(TurnProfiler.Span span, long time) {
+        TurnProfiler.end(span, time);
+        return TurnProfiler.start();
     }
 
     private void advanceYear() {
@@ -618,6 +726,19 @@ public class Game implements Serializable {
         diplomacy.printState();// DEBUG
     }
 
+    /**
+     * Return the index of units and structures by owner. Built from the unit
+     * and structure lists on first use after game creation or load.
+     *
+     * @return
+     */
+    public AssetIndex getAssetIndex() {
+        if (asset_index == null) {
+            asset_index = new AssetIndex(planets.size(), units, structures);
+        }
+        return asset_index;
+    }
+
     public List<Unit> getCargoPods() {
         return cargo_pods;
     }
@@ -722,11 +843,7 @@ public class Game implements Serializable {
 
     public void setFactionCities() {
         faction_cities.clear();
-        for (Structure s : structures) {
-            if (s.owner == turn) {
-                faction_cities.add(s);
-            }
-        }
+        faction_cities.addAll(getAssetIndex().getStructures(turn));
     }
 
     public List<Unit> getUnmovedUnits() {
@@ -740,12 +857,12 @@ public class Game implements Serializable {
      */
     public void resetUnmovedUnits(boolean start_of_turn) {
         unmoved_units.clear();
-        for (Unit u : units) {
+        for (Unit u : getAssetIndex().getUnits(turn)) {
             /*
             FIXME units with zero move may have more than 0 mp when this is called during the first turn
             so we need to check type_data also, this should not be so
              */
-            if (u.owner == turn && !u.is_sentry && u.move_points > 0 && u.type_data.move_pts > 0) {
+            if (!u.is_sentry && u.move_points > 0 && u.type_data.move_pts > 0) {
 
                 unmoved_units.add(u);
                 if (start_of_turn) {
@@ -807,10 +924,8 @@ public class Game implements Serializable {
     }
 
     public void resetMovePoints() {
-        for (Unit e : units) {
-            if (e.owner == turn) {
-                e.move_points = unit_types[e.type][e.t_lvl].move_pts;
-            }
+        for (Unit e : getAssetIndex().getUnits(turn)) {
+            e.move_points = unit_types[e.type][e.t_lvl].move_pts;
         }
     }
 
@@ -970,7 +1085,7 @@ public class Game implements Serializable {
 //                System.out.println("unit = " + unit);
 //            }
 //        }
-        List<Unit> t_list = new LinkedList<>();
+        List<Unit> t_list = new UnitStack();
         for (Unit e : selected) {
             int move_cost = destination.getMoveCost(e.move_type.ordinal());
             int max_move = e.type_data.move_pts;
@@ -991,7 +1106,7 @@ public class Game implements Serializable {
      * @param selected
      */
     public void subMovePointsSpace(List<Unit> selected) {
-        List<Unit> t_list = new LinkedList<>();
+        List<Unit> t_list = new UnitStack();
         for (Unit unit : selected) {
             unit.move_points--;
             if (unit.move_points == 0) {
@@ -1036,6 +1151,7 @@ public class Game implements Serializable {
     }
 
     public void spotSpaceStack(List<Unit> stack, int spotting, int faction) {
+        TurnProfiler.count(TurnProfiler.Count.SPOT_UPDATES);
         for (Unit unit : stack) {
             if (spotting >= unit.type_data.camo) {
                 unit.spotted[faction] = true;
@@ -1049,7 +1165,7 @@ public class Game implements Serializable {
         Hex hex2 = path.get(1);
         List<Unit> stack = hex.getStack();
         List<Unit> stack2 = hex2.getStack();
-        List<Unit> selected = new LinkedList<>();
+        List<Unit> selected = new UnitStack();
         for (Unit unit : stack) {
             if (unit.isSelected()) {
                 selected.add(unit);
@@ -1092,7 +1208,7 @@ public class Game implements Serializable {
         Planet destination = galaxy_map[p.x][p.y].planet;
         List<Unit> stack = source.space_stacks[selected_faction.y];
         List<Unit> stack2 = destination.space_stacks[selected_faction.y];
-        List<Unit> selected = new LinkedList<>();
+        List<Unit> selected = new UnitStack();
         for (Unit unit : stack) {
             if (unit.isSelected()) {
                 selected.add(unit);
@@ -1128,7 +1244,7 @@ public class Game implements Serializable {
         PlanetGrid planet_grid = getPlanetGrid(getCurrentPlanetNr());
         Hex target_hex = planet_grid.getHex(q.x, q.y);
         List<Unit> stack = target_hex.getStack();
-        List<Unit> selected = new LinkedList<>();
+        List<Unit> selected = new UnitStack();
         for (Unit unit : stack) {
             if (unit.isSelected()) {
                 selected.add(unit);
@@ -1175,7 +1291,7 @@ public class Game implements Serializable {
 
         Hex target_hex = planet.planet_grid.getHex(p.x, p.y);
         List<Unit> stack2 = target_hex.getStack();
-        List<Unit> selected = new LinkedList<>();
+        List<Unit> selected = new UnitStack();
         for (Unit unit : stack) {
             if (unit.isSelected()) {
                 selected.add(unit);
@@ -1629,8 +1745,10 @@ public class Game implements Serializable {
         economy.updateProdConsForCity(city, false);
         getFaction(city.owner).addMessage(new Message("City lost to " + Util.getFactionName(new_owner) + "!",
                 C.Msg.CITY_LOST, getYear(), city));
+        getAssetIndex().structureChanging(city);
         city.owner = new_owner;
         city.prev_owner = new_prev_owner;
+        getAssetIndex().structureChanged(city);
         //add prod_cons for new owner
         economy.updateProdConsForCity(city, true);
 
@@ -1651,7 +1769,9 @@ public class Game implements Serializable {
         city.loyalty = Faction.calculateCityLoyalty(factions[turn].getTaxRate(), efs_ini, this);
         Hex hex = getHexFromPXY(p_idx, x, y);
         hex.placeStructure(city);
+        getPlanetGrid(p_idx).structureChanged();
         structures.add(city);
+        getAssetIndex().addStructure(city);
         // update production/consumption data
         economy.updateProdConsForCity(city, true);
         if (city.type == C.SHIELD) {
@@ -1672,10 +1792,12 @@ public class Game implements Serializable {
         Hex hex = getHexFromPXY(p_idx, x, y);
         Structure city = hex.getStructure();
         hex.placeStructure(null);
+        getPlanetGrid(p_idx).structureChanged();
         if (city.type == C.SHIELD) {
             planets.get(p_idx).setShield(null);
         }
         structures.remove(city);
+        getAssetIndex().removeStructure(city);
         // update production/consumption data
         economy.updateProdConsForCity(city, false);
     }
@@ -1735,6 +1857,7 @@ public class Game implements Serializable {
             Unit unit = new Unit(p_idx, x, y, owner, prev_owner, type, t_lvl, res_relic, amount, this);
 
             units.add(unit);    // Add new unit to the general unit list
+            getAssetIndex().addUnit(unit);
             hex.placeUnit(unit);    // Add new unit to the stack
             unmoved_units.add(unit);    // Add new unit to the unmoved units list
 
@@ -1867,6 +1990,7 @@ public class Game implements Serializable {
         stack.remove(unit);         // Remove unit from its stack
         unmoved_units.remove(unit); // Remove unit from the unmoved unit list
         units.remove(unit);         // Remove unit from the general unit list
+        getAssetIndex().removeUnit(unit);
 
         if (unit.carrier != null) {
             unit.carrier.disembark(unit);    // Remove this unit from its carrier's cargo list
@@ -1913,10 +2037,17 @@ public class Game implements Serializable {
                 resources.addToProdCons(C.CONS, unit.owner, p_idx, C.RES_FOOD, 1);
             }
         }
+        boolean planet_change = unit.p_idx != p_idx;
+        if (planet_change) {
+            getAssetIndex().unitChanging(unit);
+        }
         unit.in_space = in_space;
         unit.p_idx = p_idx;
         unit.x = x;
         unit.y = y;
+        if (planet_change) {
+            getAssetIndex().unitChanged(unit);
+        }
 
         if (unit.type == C.CARGO_UNIT_TYPE) {
             resources.addToPodLists(unit);    // Locations of cargo pods are tracked by class Resources
@@ -1947,8 +2078,10 @@ public class Game implements Serializable {
 
         }
 
+        getAssetIndex().unitChanging(unit);
         unit.owner = new_owner.x;
         unit.prev_owner = new_owner.y;
+        getAssetIndex().unitChanged(unit);
         unit.spotted[new_owner.x] = true;
         if (unit.type == C.CARGO_UNIT_TYPE) {
             resources.addToPodLists(unit);    // Ownership of cargo pods is tracked by class Resources
@@ -2071,8 +2204,7 @@ public class Game implements Serializable {
     public boolean isShielded(Hex hex, int p_idx) {
         Structure shield = planets.get(p_idx).getShield();
         if (shield != null && getEfs_ini().shield_radius > -1) {
-            Set<Hex> shielded_hexes = Util.getHexesWithinRadiusOf(getHexFromPXY(shield.p_idx, shield.x, shield.y), getEfs_ini().shield_radius, null);
-            if (shielded_hexes.contains(hex)) {
+            if (HexRings.isWithin(getHexFromPXY(shield.p_idx, shield.x, shield.y), hex, getEfs_ini().shield_radius)) {
                 return true;
             }
         }
@@ -2085,6 +2217,83 @@ public class Game implements Serializable {
         }
     }
 
+    /**
+     * @return the command line options this game was started with
+     */
+    public CommandLine getMainArgs() {
+        return main_args;
+    }
+
+    /**
+     * Set the command line options, needed after a game has been loaded since
+     * options of the saving session need not apply.
+     *
+     * @param main_args
+     */
+    public void setMainArgs(CommandLine main_args) {
+        this.main_args = main_args;
+        initCombatTrace();
+    }
+
+    /**
+     * Profiler of turn processing. Unless set with setProfiler() writes to
+     * the file given with C.OPT_PROFILE, if any.
+     *
+     * @return the profiler
+     */
+    public TurnProfiler getProfiler() {
+        if (profiler == null) {
+            profiler = TurnProfiler.create(main_args != null && main_args.hasOption(C.OPT_PROFILE)
+                    ? main_args.getOptionValue(C.OPT_PROFILE) : null);
+        }
+        return profiler;
+    }
+
+    /**
+     * @param profiler the profiler to set
+     */
+    public void setProfiler(TurnProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Continue the profile of a game this game replaces, so that the profile
+     * file is neither reopened and truncated nor left open. Call before the
+     * first turn of this game.
+     *
+     * @param previous the replaced game, may be null
+     */
+    public void continueProfiler(Game previous) {
+        if (previous != null && previous.profiler != null) {
+            profiler = previous.profiler;
+        }
+    }
+
+    /**
+     * Trace combat as requested with C.OPT_COMBAT_TRACE, unless a trace has
+     * already been set. A trace set to CombatTrace.NONE, eg. because it could
+     * not be opened, stays that way.
+     */
+    private void initCombatTrace() {
+        if (main_args != null && main_args.hasOption(C.OPT_COMBAT_TRACE)
+                && !battle.isTraceSet()) {
+            battle.setTrace(CombatTrace.create(main_args.getOptionValue(C.OPT_COMBAT_TRACE)));
+        }
+    }
+
+    /**
+     * Continue the combat trace of a game this game replaces, so that the
+     * trace file is neither reopened and truncated nor left open. Call before
+     * init() or setMainArgs().
+     *
+     * @param previous the replaced game, may be null
+     */
+    public void continueCombatTrace(Game previous) {
+        if (previous != null && previous.battle.isTraceSet()) {
+            battle.setTrace(previous.battle.getTrace());
+        }
+    }
+
     /**
      * @return the initial_seed
      */
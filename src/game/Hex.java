@@ -31,9 +31,9 @@ import galaxyreader.Structure;
 import galaxyreader.Unit;
 import java.io.PrintWriter;
 import java.io.Serializable;
-import java.util.LinkedList;
 import java.util.List;
 import util.C;
+import util.UnitStack;
 
 /**
  * A planetary map hex.
@@ -48,7 +48,10 @@ public class Hex implements Comparable<Hex>, Serializable {
     private static final long serialVersionUID = 1L;
     private Hex[] neighbours;
     private boolean[] terrain = new boolean[12];
-    private boolean[] visible = new boolean[14];
+    // spotted hexes of this hex's planet
+    private Visibility visibility;
+    // only in saves made before Visibility, moved there by PlanetGrid on load
+    private boolean[] visible;
     // for Dijkstra
     private boolean visited;
     private int[] move_cost = new int[C.MoveType.values().length];
@@ -64,41 +67,51 @@ public class Hex implements Comparable<Hex>, Serializable {
 
     //***** ai support data
     private transient int land_nr = -1;
-    private transient int hex_idx;
     private byte recon_time = 127;
     private short terr_flags;
     public Hex() {
         neighbours = new Hex[6];
         flags = 0;
-        stack = new LinkedList<>();
+        stack = new UnitStack();
         city = null;
     }
 
-    public Hex(int x, int y) {
+    public Hex(int x, int y, Visibility visibility) {
 
         neighbours = new Hex[6];
+        this.visibility = visibility;
         flags = 0;
         this.x = x;
         this.y = y;
-        //this.hex_idx = x + y * C.PLANET_MAP_WIDTH;
-        stack = new LinkedList<>();
+        stack = new UnitStack();
 //        stack = null;
         city = null;
 
     }
 
-    public void initVisibility() {
-        for (int i = 0; i < visible.length; i++) {
-            visible[i] = false;
-        }
-    }
-
     public boolean isSpotted(int faction) {
-        return visible[faction];
+        return visibility.isSpotted(faction, getHexIdx());
     }
 
     public void spot(int faction) {
-        visible[faction] = true;
+        visibility.spot(faction, getHexIdx());
+    }
+
+    /**
+     * Move visibility of a hex loaded from an old save into visibility.
+     *
+     * @param visibility
+     */
+    void migrateVisibility(Visibility visibility) {
+        this.visibility = visibility;
+        if (visible != null) {
+            for (int i = 0; i < visible.length; i++) {
+                if (visible[i]) {
+                    spot(i);
+                }
+            }
+            visible = null;
+        }
     }
 
     public Hex getNeighbour(int i) {
@@ -115,6 +128,22 @@ public class Hex implements Comparable<Hex>, Serializable {
 
     public void setTerrain(boolean[] terrain) {
         this.terrain = terrain;
+        setTerrFlags();
+    }
+
+    /**
+     * Set or clear one terrain type. Use PlanetGrid.setTerrain() during play,
+     * it also updates the move cost cache of the planet.
+     *
+     * @param type
+     * @param value
+     */
+    void setTerrain(int type, boolean value) {
+        terrain[type] = value;
+        setTerrFlags();
+    }
+
+    private void setTerrFlags() {
         terr_flags = 0x0000;
         for (boolean u : terrain) {
             terr_flags <<= 1;
@@ -140,6 +169,16 @@ public class Hex implements Comparable<Hex>, Serializable {
         return stack;
     }
 
+    /**
+     * Replace the stack list of this hex, used when restoring a Snapshot or a
+     * save made before UnitStack.
+     *
+     * @param stack
+     */
+    void setStack(List<Unit> stack) {
+        this.stack = UnitStack.of(stack);
+    }
+
     public void addStack(List<Unit> stack) {
         this.stack.addAll(stack);
     }
@@ -283,15 +322,14 @@ public class Hex implements Comparable<Hex>, Serializable {
     }
 
     /**
+     * Flat index of this hex on its planet map, 0 to C.PLANET_MAP_WIDTH *
+     * C.PLANET_MAP_COLUMNS - 1. Computed from x, y so it is valid for every
+     * hex, also ocean hexes and hexes of a just loaded game.
+     *
      * @return the hex_idx
      */
     public int getHexIdx() {
-        return hex_idx;
-    }
-
-    public Hex setHexIdx() {
-        this.hex_idx = x + y * C.PLANET_MAP_WIDTH;
-        return this;
+        return x + y * C.PLANET_MAP_WIDTH;
     }
 
     public void omniscience(int turn) {
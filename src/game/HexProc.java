@@ -32,12 +32,11 @@ import galaxyreader.Planet;
 import galaxyreader.Structure;
 import galaxyreader.Unit;
 import java.io.Serializable;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 import util.C;
+import util.HexRings;
 import util.StackIterator;
+import util.TurnProfiler;
 import util.Util;
 
 /**
@@ -46,7 +45,7 @@ import util.Util;
  *
  * @author joulupunikki
  */
-public class HexProc implements Serializable {
+public class HexProc implements HexRings.Visitor, Serializable {
 
     /**
      *
@@ -61,6 +60,10 @@ public class HexProc implements Serializable {
     private List<Unit> stack_a;
     private int max_spot_range;
     private Planet planet;
+    // procedure of current hexProc() call
+    private int oper;
+    // reused for all stack walks, which do not nest
+    private transient StackIterator stack_iter;
 
     public HexProc(Game game) {
         this.game = game;
@@ -74,6 +77,13 @@ public class HexProc implements Serializable {
             case C.SPOT:
                 spot(hex, range);
                 break;
+            case C.SPOT_HEX:
+                hex.spot(faction_a);
+                break;
+            case C.SPOT_AREA:
+                hex.spot(faction_a);
+                spot(hex, range);
+                break;
             default:
                 throw new AssertionError();
         }
@@ -85,7 +95,7 @@ public class HexProc implements Serializable {
         if (stack.isEmpty()) {
             return;
         }
-        StackIterator iter = new StackIterator(stack);
+        StackIterator iter = iterate(stack);
         Unit unit = iter.next();
         while (unit != null) {
             unit.spotted[faction_a] = true;
@@ -104,7 +114,7 @@ public class HexProc implements Serializable {
             return;
         }
         int spotting_b = 0;
-        StackIterator iter = new StackIterator(stack_b);
+        StackIterator iter = iterate(stack_b);
         Unit unit = iter.next();
         while (unit != null) {
             if (spotting_b < unit.type_data.spot) {
@@ -177,24 +187,19 @@ public class HexProc implements Serializable {
         if (stack.isEmpty() && struct == null) {
             return;
         }
-        List<Integer> distances = new LinkedList<>();
-        Set<Hex> hexes;
         int range = 0;
         if (struct != null) {
             range = 5;
             this.faction_a = struct.owner;
-            hexes = Util.getHexesWithinRadiusOf(hex, range, distances);
-            for (Iterator<Hex> hex_iter = hexes.iterator(); hex_iter.hasNext();) {
-                Hex hex2 = hex_iter.next();
-                hex2.spot(faction_a);
-            }
+            this.planet = planet;
+            hexProc(hex, range, C.SPOT_HEX);
         }
 
         if (!stack.isEmpty()) {
 
             this.faction_a = stack.get(0).owner;
             int spotting = 0;
-            StackIterator iter = new StackIterator(stack);
+            StackIterator iter = iterate(stack);
             Unit unit = iter.next();
             while (unit != null) {
                 if (unit.type_data.spot > spotting) {
@@ -210,15 +215,7 @@ public class HexProc implements Serializable {
             this.spotting_a = spotting;
             this.stack_a = stack;
             this.hex = hex;
-            distances.clear();
-            hexes = Util.getHexesWithinRadiusOf(hex, range, distances);
-            Iterator<Integer> dist_iter = distances.iterator();
-            for (Iterator<Hex> hex_iter = hexes.iterator(); hex_iter.hasNext();) {
-                int dist = dist_iter.next();
-                Hex hex2 = hex_iter.next();
-                hex2.spot(faction_a);
-                spot(hex2, dist);
-            }
+            hexProc(hex, range, C.SPOT_AREA);
         }
 
         //hexProc(hex, range, C.INIT_SPOT);
@@ -226,9 +223,10 @@ public class HexProc implements Serializable {
     }
 
     public void spotProc(Hex hex, List<Unit> stack) {
+        TurnProfiler.count(TurnProfiler.Count.SPOT_UPDATES);
 
         int spotting = 0;
-        StackIterator iter = new StackIterator(stack);
+        StackIterator iter = iterate(stack);
         Unit unit = iter.next();
         while (unit != null) {
             if (spotting < unit.type_data.spot) {
@@ -248,84 +246,25 @@ public class HexProc implements Serializable {
         hexProc(hex, this.max_spot_range, C.SPOT);
     }
 
+    /**
+     * Apply procedure oper to hexes within range of hex, using precomputed
+     * hex rings of the planet map.
+     */
     private void hexProc(Hex hex, int range, int oper) {
-        proc(hex, 0, oper);
-        Hex radial = hex;
-        radial = radial.getN(C.NORTHEAST);
-        for (int i = 1; i <= range; i++) {
-            if (radial == null) {
-                break;
-            }
-            Hex circ = radial;
-            proc(circ, i, oper);
-            for (int j = 1; j <= i && circ.getN(C.NORTHWEST) != null; j++) {
-                circ = circ.getN(C.NORTHWEST);
-                proc(circ, i, oper);
-            }
-            circ = radial;
-            for (int j = 1; j <= i && circ.getN(C.SOUTH) != null; j++) {
-                circ = circ.getN(C.SOUTH);
-                proc(circ, i, oper);
-            }
-            radial = radial.getN(C.NORTHEAST);
-        }
-        radial = hex;
-        radial = radial.getN(C.SOUTHEAST);
-        for (int i = 1; i <= range; i++) {
-            if (radial == null) {
-                break;
-            }
-            Hex circ = radial;
-            proc(circ, i, oper);
-            for (int j = 1; j <= i && circ.getN(C.SOUTHWEST) != null; j++) {
-                circ = circ.getN(C.SOUTHWEST);
-                proc(circ, i, oper);
-            }
-            circ = radial;
-            for (int j = 1; j <= i && circ.getN(C.NORTH) != null; j++) {
-                circ = circ.getN(C.NORTH);
-                proc(circ, i, oper);
-            }
-            radial = radial.getN(C.SOUTHEAST);
-        }
-        radial = hex;
-        radial = radial.getN(C.SOUTHWEST);
-        for (int i = 1; i <= range; i++) {
-            if (radial == null) {
-                break;
-            }
-            Hex circ = radial;
-            proc(circ, i, oper);
-            for (int j = 1; j <= i && circ.getN(C.SOUTHEAST) != null; j++) {
-                circ = circ.getN(C.SOUTHEAST);
-                proc(circ, i, oper);
-            }
-            circ = radial;
-            for (int j = 1; j <= i && circ.getN(C.NORTH) != null; j++) {
-                circ = circ.getN(C.NORTH);
-                proc(circ, i, oper);
-            }
-            radial = radial.getN(C.SOUTHWEST);
-        }
-        radial = hex;
-        radial = radial.getN(C.NORTHWEST);
-        for (int i = 1; i <= range; i++) {
-            if (radial == null) {
-                break;
-            }
-            Hex circ = radial;
-            proc(circ, i, oper);
-            for (int j = 1; j <= i && circ.getN(C.NORTHEAST) != null; j++) {
-                circ = circ.getN(C.NORTHEAST);
-                proc(circ, i, oper);
-            }
-            circ = radial;
-            for (int j = 1; j <= i && circ.getN(C.SOUTH) != null; j++) {
-                circ = circ.getN(C.SOUTH);
-                proc(circ, i, oper);
-            }
-            radial = radial.getN(C.NORTHWEST);
+        this.oper = oper;
+        HexRings.forEachWithin(planet.planet_grid.getMapArray(), hex, range, this);
+    }
+
+    @Override
+    public void visit(Hex hex, int dist) {
+        proc(hex, dist, oper);
+    }
+
+    private StackIterator iterate(List<Unit> stack) {
+        if (stack_iter == null) {
+            stack_iter = new StackIterator();
         }
+        return stack_iter.reset(stack);
     }
 
     public void setMaxSpotRange(int range) {
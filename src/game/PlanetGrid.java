@@ -28,15 +28,19 @@
 package game;
 
 import galaxyreader.Planet;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
 import util.C;
+import util.MoveCostCache;
 
 /**
  * Organizes the individual planet map Hexes in a 2-dimensional table, and holds
@@ -53,10 +57,17 @@ public class PlanetGrid implements Serializable {
     private Hex origin;
     //array of pointers to map hexes
     private Hex[][] map_array;
+    // per faction spotted hex bitsets
+    private Visibility visibility = new Visibility();
     //***** AI support data structures
     // every continent has all its hexes in one LinkedHashMap
     private transient ArrayList<LinkedHashMap<Hex, Hex>> continent_maps;
-    // intra continent hex distances, triangular 2-D byte array
+    // hex index -> index of hex within its continent, -1 for ocean hexes
+    private transient int[] local_idx;
+    // continent -> hex indexes of its hexes, by local index
+    private transient int[][] continent_hexes;
+    // intra continent hex distances, one triangular byte array per continent
+    // indexed by local hex indexes, computed on first query of the continent
     /*
      notice: map height == 32, width == 44 hexes, and straight line max hex
      distance on a planet map is 22 hexes,
@@ -65,7 +76,11 @@ public class PlanetGrid implements Serializable {
      distance > 127, for the unlikely event that such a continent occurs, the
      hex distance for such hexes will be set to -128.
      */
-    private transient volatile byte[][] intra_cont_hex_dist = null;
+    private transient byte[][] intra_cont_hex_dist;
+    // terrain move costs and dynamic overlay bookkeeping for PathFind
+    private transient MoveCostCache move_cost_cache = null;
+    // terrain and structure changes during play, see getMapChanges()
+    private transient int map_changes;
 
     public PlanetGrid() {
 
@@ -73,7 +88,7 @@ public class PlanetGrid implements Serializable {
         map_array = new Hex[C.PLANET_MAP_WIDTH][C.PLANET_MAP_COLUMNS];
         for (int i = 0; i < map_array.length; i++) {
             for (int j = 0; j < map_array[i].length; j++) {
-                map_array[i][j] = new Hex(i, j);
+                map_array[i][j] = new Hex(i, j, visibility);
             }
         }
         // link hexes to form a graph of planet map
@@ -130,6 +145,14 @@ public class PlanetGrid implements Serializable {
 
     }
 
+    /**
+     * @param hex_idx hex index, see Hex.getHexIdx()
+     * @return
+     */
+    public Hex getHex(int hex_idx) {
+        return map_array[hex_idx % C.PLANET_MAP_WIDTH][hex_idx / C.PLANET_MAP_WIDTH];
+    }
+
     public Hex getHex(int i, int j) {
         return map_array[i][j];
     }
@@ -149,18 +172,9 @@ public class PlanetGrid implements Serializable {
     }
 
     /**
-     * Create per Galaxy static AI support data structures, slow calculations
-     * not suitable for serial execution (will delay game initialization).
-      *
-     * @param planet
-     */
-    public void parallelSetAIDataStructures(Planet planet) {
-        defineIntraContinentHexDist();
-    }
-
-    /**
-     * Create per Galaxy static AI support data structures, fast calculations
-     * suitable for serial execution.
+     * Create per Galaxy static AI support data structures. Only continents
+     * are defined here, intra continent hex distances are computed lazily on
+     * first query, see getIntraContHexDist().
      *
      * @param planet
      */
@@ -168,54 +182,46 @@ public class PlanetGrid implements Serializable {
         defineContinents(planet);
     }
 
-    private void defineIntraContinentHexDist() {
-        byte tmp_dists[][] = new byte[C.PLANET_MAP_COLUMNS * C.PLANET_MAP_WIDTH][];
-        for (int i = 0; i < tmp_dists.length; i++) {
-            tmp_dists[i] = new byte[i + 1];
-            for (int j = 0; j < tmp_dists[i].length; j++) {
-                tmp_dists[i][j] = -1;
-
-            }
-        }
-        Set<Hex> all_hexes = new LinkedHashSet<>();  // set of all visited hexes
-        LinkedList<Hex> queue = new LinkedList<>();
-        all_hexes.add(origin);
-        queue.add(origin);
-        while (!queue.isEmpty()) {
-            Hex father = queue.pop();
-            Hex[] neighbours = father.getNeighbours();
-            for (Hex child : neighbours) {
-                if (child != null && all_hexes.add(child)) {
-                    queue.add(child);
-                }
-            }
-            if (father.getLandNr() < 0) {
-                continue;
-            }
-            Set<Hex> all_hexes2 = new LinkedHashSet<>();  // set of all visited hexes
-            LinkedList<Hex> queue2 = new LinkedList<>();
-            LinkedList<Integer> dist_q = new LinkedList<>();
-            all_hexes2.add(father);
-            queue2.add(father);
-            dist_q.add(0);
-            while (!queue2.isEmpty()) {
-                Hex father2 = queue2.pop();
-                int dist = dist_q.pop();
-                if (father2.getLandNr() != father.getLandNr()) {
-                    continue;
+    /**
+     * Breadth first search from every hex of continent land_nr to every other
+     * hex of it, thru continent hexes only. Each hex is queued at most once
+     * per search so the queue is a flat int array of local hex indexes.
+     *
+     * @param land_nr
+     * @return triangular distance array of the continent
+     */
+    private byte[] defineIntraContinentHexDist(int land_nr) {
+        int[] hexes = continent_hexes[land_nr];
+        int size = hexes.length;
+        byte[] dists = new byte[size * (size + 1) / 2];
+        int[] queue = new int[size];
+        int[] dist = new int[size];
+        for (int source = 0; source < size; source++) {
+            Arrays.fill(dist, -1);
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            dist[source] = 0;
+            while (head != tail) {
+                int father = queue[head++];
+                if (father <= source) {
+                    setIntraContHexDist(dists, source, father, dist[father]);
                 }
-                initIntraContHexDist(father.getHexIdx(), father2.getHexIdx(), dist, tmp_dists);
-                Hex[] neighbours2 = father2.getNeighbours();
-                for (Hex child2 : neighbours2) {
-                    if (child2 != null && all_hexes2.add(child2)) {
-                        queue2.add(child2);
-                        dist_q.add(dist + 1);
+                int hex_idx = hexes[father];
+                Hex[] neighbours = map_array[hex_idx % C.PLANET_MAP_WIDTH][hex_idx / C.PLANET_MAP_WIDTH].getNeighbours();
+                for (Hex child : neighbours) {
+                    if (child == null || child.getLandNr() != land_nr) {
+                        continue;
+                    }
+                    int c = local_idx[child.getHexIdx()];
+                    if (dist[c] < 0) {
+                        dist[c] = dist[father] + 1;
+                        queue[tail++] = c;
                     }
                 }
-
             }
         }
-        intra_cont_hex_dist = tmp_dists;
+        return dists;
     }
 
     /**
@@ -266,12 +272,22 @@ public class PlanetGrid implements Serializable {
             }
         }
         int count = 0;
+        local_idx = new int[C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS];
+        Arrays.fill(local_idx, -1);
+        continent_hexes = new int[continent_maps.size()][];
         for (LinkedHashMap<Hex, Hex> continent_map : continent_maps) {
+            int[] hexes = new int[continent_map.size()];
+            int local = 0;
             for (Map.Entry<Hex, Hex> entrySet : continent_map.entrySet()) {
-                entrySet.getValue().setHexIdx().setLandNr(count); // method chaining
+                Hex hex = entrySet.getValue();
+                hex.setLandNr(count);
+                local_idx[hex.getHexIdx()] = local;
+                hexes[local++] = hex.getHexIdx();
             }
+            continent_hexes[count] = hexes;
             count++;
         }
+        intra_cont_hex_dist = new byte[continent_maps.size()][];
     }
 
 //    public Hex getNextStack(Point p) {
@@ -373,50 +389,140 @@ public class PlanetGrid implements Serializable {
         }
     }
 
+    /**
+     * Returns the move cost cache of this planet for terr_cost and tile_set,
+     * creating it if needed.
+     *
+     * @param terr_cost
+     * @param tile_set
+     * @return
+     */
+    public MoveCostCache getMoveCostCache(double[][][] terr_cost, int tile_set) {
+        if (move_cost_cache == null || !move_cost_cache.isFor(terr_cost, tile_set)) {
+            move_cost_cache = new MoveCostCache(map_array, terr_cost, tile_set);
+        }
+        return move_cost_cache;
+    }
+
+    /**
+     * Set or clear terrain type of hex of this planet, eg. when a road is
+     * built. Keeps the move cost cache up to date, all terrain changes during
+     * play should be made thru this.
+     *
+     * @param hex
+     * @param type terrain type, one of C.OCEAN etc.
+     * @param value
+     */
+    public void setTerrain(Hex hex, int type, boolean value) {
+        hex.setTerrain(type, value);
+        if (move_cost_cache != null) {
+            move_cost_cache.terrainChanged(hex);
+        }
+        map_changes++;
+    }
+
+    /**
+     * Note that a structure has been placed on or removed from a hex of this
+     * planet.
+     */
+    public void structureChanged() {
+        map_changes++;
+    }
+
+    /**
+     * Count of terrain, structure and visibility changes, for caches of map
+     * drawing. Only changes, not the absolute value, are meaningful.
+     *
+     * @return the change count
+     */
+    public int getMapChanges() {
+        return map_changes + visibility.getChanges();
+    }
+
+    /**
+     * Drop the move cost cache, call after Hex move costs have been written
+     * other than thru the cache.
+     */
+    public void resetMoveCostCache() {
+        move_cost_cache = null;
+    }
+
+    /**
+     * Returns the hex distance between a and b thru hexes of their continent,
+     * -1 if they are not on the same continent and -128 if the distance is
+     * over 127. The distances of a continent are computed on the first query
+     * of the continent.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
     public byte getIntraContHexDist(Hex a, Hex b) {
         return getIntraContHexDist(a.getHexIdx(), b.getHexIdx());
-        //return getIntraContHexDist(a.getX() + a.getY() * C.PLANET_MAP_WIDTH, b.getX() + b.getY() * C.PLANET_MAP_WIDTH);
     }
 
     public byte getIntraContHexDist(int a, int b) {
-        if (a >= b) {
-            return intra_cont_hex_dist[a][b];
+        Hex hex_a = map_array[a % C.PLANET_MAP_WIDTH][a / C.PLANET_MAP_WIDTH];
+        Hex hex_b = map_array[b % C.PLANET_MAP_WIDTH][b / C.PLANET_MAP_WIDTH];
+        int land_nr = hex_a.getLandNr();
+        if (land_nr < 0 || land_nr != hex_b.getLandNr()) {
+            return -1;
+        }
+        byte[] dists = getContinentHexDists(land_nr);
+        int local_a = local_idx[a];
+        int local_b = local_idx[b];
+        if (local_a >= local_b) {
+            return dists[local_a * (local_a + 1) / 2 + local_b];
         } else {
-            return intra_cont_hex_dist[b][a];
+            return dists[local_b * (local_b + 1) / 2 + local_a];
         }
     }
 
-    public byte[][] getIntraContHexDist() {
-        return intra_cont_hex_dist;
+    private synchronized byte[] getContinentHexDists(int land_nr) {
+        if (intra_cont_hex_dist[land_nr] == null) {
+            intra_cont_hex_dist[land_nr] = defineIntraContinentHexDist(land_nr);
+        }
+        return intra_cont_hex_dist[land_nr];
     }
 
-    private void initIntraContHexDist(int a, int b, int dist, byte[][] array) {
-        if (a >= b) {
-            if (dist > 127) {
-                dist = -128;
-            }
-            array[a][b] = (byte) dist;
+    private static void setIntraContHexDist(byte[] dists, int a, int b, int dist) {
+        if (dist > 127) {
+            dist = -128;
         }
+        dists[a * (a + 1) / 2 + b] = (byte) dist;
     }
 
-    private void setIntraContHexDist(int a, int b, int dist) {
-        if (a >= b) {
-            if (dist > 127) {
-                dist = -128;
-            }
-            intra_cont_hex_dist[a][b] = (byte) dist;
-        }
+    public ArrayList<LinkedHashMap<Hex, Hex>> getContinentMaps() {
+        return continent_maps;
     }
 
-    public void setIntraContHexDist(byte[][] b) {
-        intra_cont_hex_dist = b;
+    public Visibility getVisibility() {
+        return visibility;
     }
 
-    public ArrayList<LinkedHashMap<Hex, Hex>> getContinentMaps() {
-        return continent_maps;
+    /**
+     * Saves made before Visibility have visibility stored in the hexes, move
+     * it to a Visibility. Saves made before UnitStack have LinkedList stacks.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (Hex[] column : map_array) {
+            for (Hex hex : column) {
+                hex.setStack(hex.getStack());
+            }
+        }
+        if (visibility == null) {
+            visibility = new Visibility();
+            for (Hex[] column : map_array) {
+                for (Hex hex : column) {
+                    hex.migrateVisibility(visibility);
+                }
+            }
+        }
     }
 
     public void omniscience(int turn) {
+        visibility.spotAll(turn);
         for (int i = 0; i < map_array.length; i++) {
             for (int j = 0; j < map_array[i].length; j++) {
                 map_array[i][j].omniscience(turn);
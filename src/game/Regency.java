@@ -28,11 +28,13 @@
 package game;
 
 import dat.EfsIni;
+import galaxyreader.Structure;
+import galaxyreader.Unit;
+import java.awt.Point;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.List;
-import state.ByzII;
 import state.ByzII2;
 import util.C;
 import util.Util;
@@ -405,7 +407,7 @@ public class Regency implements Serializable {
                     default:
                         throw new AssertionError();
                 }
-                ByzII.setAssets(t, t);
+                setAssets(t, t, game);
             } 
         }
     }
@@ -414,6 +416,63 @@ public class Regency implements Serializable {
         return years_since_throne_claim;
     }
 
+    /**
+     * Transfer the units and cities of ministry to faction. If faction == -1
+     * the ministry will own its assets.
+     *
+     * @param ministry
+     * @param faction
+     * @param game
+     */
+    public static void setAssets(int ministry, int faction, Game game) {
+        List<Unit> u = game.getUnits();
+        List<Structure> s = game.getStructures();
+        Point p = new Point(faction, ministry);
+        if (faction == -1) {
+            p.x = ministry;
+        }
+
+        for (Unit u1 : u) {
+            if (u1.prev_owner == ministry) {
+                game.changeOwnerOfUnit(p, u1);
+            }
+        }
+        for (Structure s1 : s) {
+            if (s1.prev_owner == ministry) {
+                game.getEconomy().updateProdConsForCity(s1, false);
+                game.getAssetIndex().structureChanging(s1);
+                s1.owner = p.x;
+                game.getAssetIndex().structureChanged(s1);
+                game.getEconomy().updateProdConsForCity(s1, true);
+            }
+        }
+    }
+
+    /**
+     * Return true iff stack may engage in combat. On Byzantium II only spies,
+     * submarines and stealth ships may fight until someone has claimed the
+     * throne.
+     *
+     * @param stack
+     * @return
+     */
+    public boolean isByzIICombatOK(List<Unit> stack) {
+        if (years_since_throne_claim < 0 && stack.get(0).p_idx == C.BYZ_II_P_IDX) {
+            for (Unit u : stack) {
+                switch (u.type) {
+                    case C.STEALTH_SHIP_UNIT_TYPE:
+                    case C.SUBMARINE_UNIT_TYPE:
+                    case C.SPY_UNIT_TYPE:
+                        // OK to attack
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
     /**
      * @return the crowned_emperor
      */
@@ -441,7 +500,7 @@ public class Regency implements Serializable {
         return ret_val;
     }
 
-    public void enforcePromisedMinistries() {
+    public void enforcePromisedMinistries(Game game) {
         for (int i = 0; i < promised_ministries.length; i++) {
             switch (promised_ministries[i]) {
                 case C.FLEET:
@@ -457,7 +516,7 @@ public class Regency implements Serializable {
                     break;
             }
             if (promised_ministries[i] > -1) {
-                ByzII.setAssets(promised_ministries[i], i);
+                setAssets(promised_ministries[i], i, game);
             }
 
         }
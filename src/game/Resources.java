@@ -292,10 +292,11 @@ public class Resources implements Serializable {
         List<Unit> stack = game.getHexFromPXY(p_idx, x, y).getStack();    // Get the stack in the hex
 
         int amount_still_to_add = amount;
+        StackIterator iterator = new StackIterator();
         while (amount_still_to_add > 0) {
 
             // Look for a suitable pod in the stack already that we can add to
-            StackIterator iterator = new StackIterator(stack);    // Go through stack (including passengers)
+            iterator.reset(stack);    // Go through stack (including passengers)
             Unit unit = iterator.next();
             while (unit != null) {
                 if (unit.type == C.CARGO_UNIT_TYPE && unit.res_relic == resource_type && unit.amount < 999) {
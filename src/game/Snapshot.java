@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package game;
+
+import dat.ResType;
+import dat.StrBuild;
+import dat.TerrCost;
+import dat.UnitType;
+import galaxyreader.Planet;
+import galaxyreader.Structure;
+import galaxyreader.Unit;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import util.C;
+
+/**
+ * Binary snapshot of game state, a compact replacement for plain Java
+ * serialization of the whole Game object graph in save files.
+ * <p>
+ * Layout: magic, format version, year, turn and planet count as ints (so that
+ * tools may peek at a snapshot without decoding it), followed by the gzip
+ * compressed Game object graph.
+ * While the graph is written the parts of it which can be rebuilt on load
+ * are replaced:
+ * <ul>
+ * <li>each planet's PlanetGrid by a GridState holding only the per hex
+ * dynamic state (terrain flags, which include roads built during play,
+ * visibility bits, stacks, cities, resources) in flat arrays, the hex graph
+ * is rebuilt on load</li>
+ * <li>references to map hexes by a planet index and hex index pair</li>
+ * <li>static tables read from DAT files (unit types, resource types,
+ * structure types, terrain costs, unit spotting and tech tables) by table
+ * references, the tables are read again on load</li>
+ * </ul>
+ * The body is still Java serialization of the game classes, so as with
+ * plain serialization a snapshot may become unreadable when these classes
+ * change. The format version covers only the layout above, readers reject
+ * snapshots of any other version.
+ *
+ * @author joulupunikki
+ */
+public class Snapshot {
+
+    public static final int MAGIC = 0x50485853; // "PHXS"
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEX_COUNT = C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Snapshot() {
+    }
+
+    /**
+     * Write a snapshot of game to out. Does not close out.
+     *
+     * @param game
+     * @param out
+     * @throws IOException
+     */
+    public static void write(Game game, OutputStream out) throws IOException {
+        capture(game, BUFFER_SIZE).write(out);
+    }
+
+    /**
+     * Serialize game into memory without compressing it. The result is
+     * independent of game, so it may be compressed and written with
+     * Captured.write() on another thread while game play continues.
+     *
+     * @param game
+     * @param size_hint expected size of the serialized game in bytes
+     * @return
+     * @throws IOException
+     */
+    public static Captured capture(Game game, int size_hint) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(size_hint);
+        SnapshotOutputStream oos = new SnapshotOutputStream(buf, game);
+        oos.writeObject(game);
+        oos.flush();
+        return new Captured(game.getYear(), game.getTurn(), game.getPlanets().size(), buf.toByteArray());
+    }
+
+    /**
+     * A serialized but not yet compressed snapshot.
+     */
+    public static class Captured {
+
+        private final int year;
+        private final int turn;
+        private final int planet_count;
+        private final byte[] body;
+
+        private Captured(int year, int turn, int planet_count, byte[] body) {
+            this.year = year;
+            this.turn = turn;
+            this.planet_count = planet_count;
+            this.body = body;
+        }
+
+        public int getYear() {
+            return year;
+        }
+
+        public int getTurn() {
+            return turn;
+        }
+
+        /**
+         * @return size of the uncompressed body in bytes
+         */
+        public int size() {
+            return body.length;
+        }
+
+        /**
+         * Write the snapshot to out, compressing the body. Does not close
+         * out.
+         *
+         * @param out
+         * @throws IOException
+         */
+        public void write(OutputStream out) throws IOException {
+            DataOutputStream dos = new DataOutputStream(out);
+            dos.writeInt(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            dos.writeInt(year);
+            dos.writeInt(turn);
+            dos.writeInt(planet_count);
+            GZIPOutputStream gz = new GZIPOutputStream(dos, BUFFER_SIZE);
+            gz.write(body);
+            gz.finish();
+            dos.flush();
+        }
+    }
+
+    /**
+     * Read a game from a snapshot in in. Static DAT tables are read from the
+     * data files, so these must be the same as when the snapshot was written.
+     * Does not close in.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    public static Game read(InputStream in) throws IOException, ClassNotFoundException {
+        DataInputStream dis = new DataInputStream(in);
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a game snapshot");
+        }
+        int version = dis.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + version + ", expected " + FORMAT_VERSION);
+        }
+        dis.readInt(); // year
+        dis.readInt(); // turn
+        int planet_count = dis.readInt();
+        SnapshotInputStream ois = new SnapshotInputStream(new GZIPInputStream(dis, BUFFER_SIZE), planet_count);
+        return (Game) ois.readObject();
+    }
+
+    /**
+     * Test whether in starts with a snapshot header. in must support mark()
+     * and is reset to where it was.
+     *
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static boolean isSnapshot(InputStream in) throws IOException {
+        in.mark(4);
+        int magic = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = in.read();
+            if (b < 0) {
+                in.reset();
+                return false;
+            }
+            magic = (magic << 8) | b;
+        }
+        in.reset();
+        return magic == MAGIC;
+    }
+
+    /**
+     * Reference to a hex of a planet map.
+     */
+    private static class HexRef implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        final int p_idx;
+        final int hex_idx;
+
+        HexRef(int p_idx, int hex_idx) {
+            this.p_idx = p_idx;
+            this.hex_idx = hex_idx;
+        }
+    }
+
+    /**
+     * Reference to a static DAT table or an entry of one.
+     */
+    private static class TableRef implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        static final int UNIT_TYPES = 0;
+        static final int UNIT_TYPE = 1;
+        static final int RES_TYPES = 2;
+        static final int RES_TYPE = 3;
+        static final int STR_BUILDS = 4;
+        static final int STR_BUILD = 5;
+        static final int TERR_COST = 6;
+        static final int GAME_RESOURCES = 7;
+        final int table;
+        final int i;
+        final int j;
+
+        TableRef(int table, int i, int j) {
+            this.table = table;
+            this.i = i;
+            this.j = j;
+        }
+    }
+
+    /**
+     * Dynamic state of the hexes of one planet map, in arrays indexed by hex
+     * index. Only non empty stacks and hexes with a city or a resource are
+     * stored.
+     */
+    private static class GridState implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        final int p_idx;
+        final short[] visible = new short[HEX_COUNT];
+        final short[] terrain = new short[HEX_COUNT];
+        int[] stack_hexes;
+        List<Unit>[] stacks;
+        int[] city_hexes;
+        Structure[] cities;
+        int[] resource_hexes;
+        Structure[] resources;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        GridState(int p_idx, PlanetGrid grid) {
+            this.p_idx = p_idx;
+            int nr_stacks = 0;
+            int nr_cities = 0;
+            int nr_resources = 0;
+            for (Hex[] column : grid.getMapArray()) {
+                for (Hex hex : column) {
+                    int bits = 0;
+                    for (int f = C.NR_FACTIONS - 1; f >= 0; f--) {
+                        bits = (bits << 1) | (hex.isSpotted(f) ? 1 : 0);
+                    }
+                    visible[hex.getHexIdx()] = (short) bits;
+                    boolean[] terr_types = hex.getTerrain();
+                    bits = 0;
+                    for (int k = terr_types.length - 1; k >= 0; k--) {
+                        bits = (bits << 1) | (terr_types[k] ? 1 : 0);
+                    }
+                    terrain[hex.getHexIdx()] = (short) bits;
+                    nr_stacks += hex.getStack().isEmpty() ? 0 : 1;
+                    nr_cities += hex.getStructure() == null ? 0 : 1;
+                    nr_resources += hex.getResource() == null ? 0 : 1;
+                }
+            }
+            stack_hexes = new int[nr_stacks];
+            stacks = new List[nr_stacks];
+            city_hexes = new int[nr_cities];
+            cities = new Structure[nr_cities];
+            resource_hexes = new int[nr_resources];
+            resources = new Structure[nr_resources];
+            nr_stacks = nr_cities = nr_resources = 0;
+            for (Hex[] column : grid.getMapArray()) {
+                for (Hex hex : column) {
+                    if (!hex.getStack().isEmpty()) {
+                        stack_hexes[nr_stacks] = hex.getHexIdx();
+                        stacks[nr_stacks++] = hex.getStack();
+                    }
+                    if (hex.getStructure() != null) {
+                        city_hexes[nr_cities] = hex.getHexIdx();
+                        cities[nr_cities++] = hex.getStructure();
+                    }
+                    if (hex.getResource() != null) {
+                        resource_hexes[nr_resources] = hex.getHexIdx();
+                        resources[nr_resources++] = hex.getResource();
+                    }
+                }
+            }
+        }
+
+        void restore(PlanetGrid grid) {
+            for (Hex[] column : grid.getMapArray()) {
+                for (Hex hex : column) {
+                    int bits = visible[hex.getHexIdx()];
+                    for (int f = 0; f < C.NR_FACTIONS; f++) {
+                        if ((bits & (1 << f)) != 0) {
+                            hex.spot(f);
+                        }
+                    }
+                    bits = terrain[hex.getHexIdx()];
+                    boolean[] terr_types = new boolean[hex.getTerrain().length];
+                    for (int k = 0; k < terr_types.length; k++) {
+                        terr_types[k] = (bits & (1 << k)) != 0;
+                    }
+                    hex.setTerrain(terr_types);
+                }
+            }
+            for (int i = 0; i < stacks.length; i++) {
+                hex(grid, stack_hexes[i]).setStack(stacks[i]);
+            }
+            for (int i = 0; i < cities.length; i++) {
+                hex(grid, city_hexes[i]).placeStructure(cities[i]);
+            }
+            for (int i = 0; i < resources.length; i++) {
+                hex(grid, resource_hexes[i]).placeResource(resources[i]);
+            }
+        }
+    }
+
+    private static Hex hex(PlanetGrid grid, int hex_idx) {
+        return grid.getHex(hex_idx % C.PLANET_MAP_WIDTH, hex_idx / C.PLANET_MAP_WIDTH);
+    }
+
+    private static class SnapshotOutputStream extends ObjectOutputStream {
+
+        private final Map<Object, Object> replacements = new IdentityHashMap<>();
+
+        SnapshotOutputStream(OutputStream out, Game game) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+            for (Planet planet : game.getPlanets()) {
+                PlanetGrid grid = planet.planet_grid;
+                replacements.put(grid, new GridState(planet.index, grid));
+                for (Hex[] column : grid.getMapArray()) {
+                    for (Hex hex : column) {
+                        replacements.put(hex, new HexRef(planet.index, hex.getHexIdx()));
+                    }
+                }
+            }
+            UnitType[][] unit_types = game.getUnitTypes();
+            replacements.put(unit_types, new TableRef(TableRef.UNIT_TYPES, -1, -1));
+            for (int i = 0; i < unit_types.length; i++) {
+                for (int j = 0; j < unit_types[i].length; j++) {
+                    if (unit_types[i][j] != null) {
+                        replacements.put(unit_types[i][j], new TableRef(TableRef.UNIT_TYPE, i, j));
+                    }
+                }
+            }
+            ResType[] res_types = game.getResTypes();
+            replacements.put(res_types, new TableRef(TableRef.RES_TYPES, -1, -1));
+            for (int i = 0; i < res_types.length; i++) {
+                if (res_types[i] != null) {
+                    replacements.put(res_types[i], new TableRef(TableRef.RES_TYPE, i, -1));
+                }
+            }
+            StrBuild[] str_build = game.getStrBuild();
+            replacements.put(str_build, new TableRef(TableRef.STR_BUILDS, -1, -1));
+            for (int i = 0; i < str_build.length; i++) {
+                if (str_build[i] != null) {
+                    replacements.put(str_build[i], new TableRef(TableRef.STR_BUILD, i, -1));
+                }
+            }
+            replacements.put(game.getTerrCost(), new TableRef(TableRef.TERR_COST, -1, -1));
+            replacements.put(game.getGameResources(), new TableRef(TableRef.GAME_RESOURCES, -1, -1));
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) {
+            Object replacement = replacements.get(obj);
+            return replacement != null ? replacement : obj;
+        }
+    }
+
+    private static class SnapshotInputStream extends ObjectInputStream {
+
+        private final PlanetGrid[] grids;
+        private final UnitType[][] unit_types = UnitType.readUnitDat();
+        private final ResType[] res_types = ResType.readResDat();
+        private final StrBuild[] str_build = StrBuild.readStrBuildDat();
+        private final double[][][] terr_cost = TerrCost.readTerrCost();
+        private final GameResources game_resources = new GameResources();
+
+        SnapshotInputStream(InputStream in, int planet_count) throws IOException {
+            super(in);
+            enableResolveObject(true);
+            // hexes may be referenced before their grid is read, so create
+            // all grids up front
+            grids = new PlanetGrid[planet_count];
+            for (int i = 0; i < grids.length; i++) {
+                grids[i] = new PlanetGrid();
+            }
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof HexRef) {
+                HexRef ref = (HexRef) obj;
+                return hex(grids[ref.p_idx], ref.hex_idx);
+            } else if (obj instanceof GridState) {
+                GridState state = (GridState) obj;
+                state.restore(grids[state.p_idx]);
+                return grids[state.p_idx];
+            } else if (obj instanceof TableRef) {
+                TableRef ref = (TableRef) obj;
+                switch (ref.table) {
+                    case TableRef.UNIT_TYPES:
+                        return unit_types;
+                    case TableRef.UNIT_TYPE:
+                        return unit_types[ref.i][ref.j];
+                    case TableRef.RES_TYPES:
+                        return res_types;
+                    case TableRef.RES_TYPE:
+                        return res_types[ref.i];
+                    case TableRef.STR_BUILDS:
+                        return str_build;
+                    case TableRef.STR_BUILD:
+                        return str_build[ref.i];
+                    case TableRef.TERR_COST:
+                        return terr_cost;
+                    case TableRef.GAME_RESOURCES:
+                        return game_resources;
+                    default:
+                        throw new IOException("Unknown table reference " + ref.table);
+                }
+            }
+            return obj;
+        }
+    }
+}
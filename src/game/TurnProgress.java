@@ -25,35 +25,41 @@
  *     all liability.
  *
  */
-package galaxyreader;
+package game;
 
 /**
- * A class which implements a simple counter. Intended for representing
- * positions in FileChannels.
+ * Receives progress of turn processing from Game.endTurn(), so that a user
+ * interface can show which faction is being processed while the turns run on
+ * another thread. Called on the thread running endTurn(), implementations
+ * must hand the values over to their own thread.
  *
  * @author joulupunikki
  */
-public class Counter {
-
-    long counter;
+public interface TurnProgress {
 
     /**
-     * Creates a new Counter and sets it to zero.
+     * Steps of processing one faction turn.
      */
-    public Counter() {
-        counter = 0;
+    enum Phase {
+        HOUSEKEEPING("Ending turn"),
+        ECONOMY("Economy"),
+        RESEARCH("Research"),
+        BUILD("Building"),
+        AI("Planning");
+
+        public final String text;
+
+        Phase(String text) {
+            this.text = text;
+        }
     }
 
     /**
-     * Adjusts the Counter by increment and returns the new Counter value.
+     * Processing of phase of faction's turn is about to start.
      *
-     * @param increment the amount by which the Counter is adjusted.
-     * @return the adjusted Counter value.
+     * @param year
+     * @param faction
+     * @param phase
      */
-    public long getSet(long increment) {
-        long ret_val = counter;
-        counter += increment;
-        return ret_val;
-    }
-
+    void phase(int year, int faction, Phase phase);
 }
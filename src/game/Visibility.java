@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package game;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import util.C;
+
+/**
+ * Map visibility of one planet as one bitset per faction, bit hex index set
+ * iff faction has spotted that hex. Hex.spot() and Hex.isSpotted() read and
+ * write these bits. Searches of what a faction has seen, omniscience and
+ * resets are word operations on the bitsets rather than visits to every Hex.
+ * <p>
+ * Hex visibility is sticky, a spotted hex stays spotted until reset(), so
+ * there are no spotters to count: spotting only ever sets bits.
+ *
+ * @author joulupunikki
+ */
+public class Visibility implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int SIZE = C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS;
+    private static final int WORDS = (SIZE + 63) >>> 6;
+    // [faction][hex index >>> 6], bit hex index & 63
+    private final long[][] spotted = new long[C.NR_FACTIONS][WORDS];
+    // bit changes, for caches of map drawing
+    private transient int changes;
+
+    public boolean isSpotted(int faction, int hex_idx) {
+        return (spotted[faction][hex_idx >>> 6] & (1L << hex_idx)) != 0;
+    }
+
+    public void spot(int faction, int hex_idx) {
+        long word = spotted[faction][hex_idx >>> 6];
+        if ((word & (1L << hex_idx)) == 0) {
+            spotted[faction][hex_idx >>> 6] = word | (1L << hex_idx);
+            changes++;
+        }
+    }
+
+    /**
+     * Mark all hexes spotted by faction.
+     *
+     * @param faction
+     */
+    public void spotAll(int faction) {
+        Arrays.fill(spotted[faction], -1L);
+        spotted[faction][WORDS - 1] = -1L >>> (WORDS * 64 - SIZE);
+        changes++;
+    }
+
+    /**
+     * Clear the visibility of all factions.
+     */
+    public void reset() {
+        for (long[] bits : spotted) {
+            Arrays.fill(bits, 0);
+        }
+        changes++;
+    }
+
+    /**
+     * Return the first hex index at or after from_idx spotted by faction, or
+     * -1 if there is none. Iterate over spotted hexes with
+     * {@code for (int i = v.nextSpotted(f, 0); i >= 0; i = v.nextSpotted(f, i + 1))}.
+     *
+     * @param faction
+     * @param from_idx
+     * @return
+     */
+    public int nextSpotted(int faction, int from_idx) {
+        if (from_idx >= SIZE) {
+            return -1;
+        }
+        long[] bits = spotted[faction];
+        int w = from_idx >>> 6;
+        long word = bits[w] & (-1L << from_idx);
+        while (word == 0) {
+            if (++w == WORDS) {
+                return -1;
+            }
+            word = bits[w];
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @return count of calls which changed bits, only changes of the count
+     * are meaningful
+     */
+    public int getChanges() {
+        return changes;
+    }
+}
@@ -32,6 +32,8 @@ import galaxyreader.Structure;
 import galaxyreader.Unit;
 import game.Game;
 import game.Hex;
+import game.PlanetGrid;
+import game.Visibility;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
@@ -218,16 +220,20 @@ public class AgoraAutobuyPanel extends JPanel {
     }
 
     public void enterDialog(int[] res_list, int planet, int type, int t_lvl, boolean[] response) {
-        // try to find a League agora and see if they are willing to sell
-        Util.HexIter hex_iter = Util.getHexIter(game, planet);
-        agora_stack = null;
-        for(Hex hex = hex_iter.next(); hex != null; hex = hex_iter.next()) {
+        // try to find a League agora and see if they are willing to sell,
+        // searching only spotted hexes, the westernmost agora is used
+        PlanetGrid grid = game.getPlanetGrid(planet);
+        Visibility visibility = grid.getVisibility();
+        Hex agora = null;
+        for (int i = visibility.nextSpotted(game.getTurn(), 0); i >= 0; i = visibility.nextSpotted(game.getTurn(), i + 1)) {
+            Hex hex = grid.getHex(i);
             Structure s = hex.getStructure();
-            if (hex.isSpotted(game.getTurn()) && s != null && s.owner == C.LEAGUE && s.type == C.AGORA) {
-                agora_stack = hex.getStack();
-                break;
+            if (s != null && s.owner == C.LEAGUE && s.type == C.AGORA
+                    && (agora == null || hex.getX() < agora.getX())) {
+                agora = hex;
             }
         }
+        agora_stack = agora == null ? null : agora.getStack();
         if (agora_stack == null) {
             response[0] = false;
             gui.showInfoWindow("You do not have the required resources to start producing "
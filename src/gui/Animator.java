@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package gui;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import javax.swing.Timer;
+
+/**
+ * Drives the stack blink and jump route/shield colour cycling of the main
+ * windows. Instead of repainting all of the main windows on every tick each
+ * registered Animated component repaints only the areas that actually
+ * change. The timers stop when no showing component has anything animated,
+ * and are restarted by wake(), which the components call when painting.
+ * <p>
+ * Colour cycled graphics may be drawn in getCycleBaseColor() to an image
+ * created with getCycleBaseICM(), and then drawn to screen through a
+ * BufferedImage sharing its raster but using getCycleICM(). Cycling the colour
+ * then only swaps the color model and nothing needs to be redrawn.
+ *
+ * @author joulupunikki
+ */
+public class Animator {
+
+    /**
+     * A component with blinking or colour cycled parts.
+     */
+    public interface Animated {
+
+        /**
+         * Called on animation ticks while the component is showing. Repaint
+         * the parts which change.
+         *
+         * @param blink true if the blink phase changed
+         * @param cycle true if the cycle colour changed
+         * @return true if the component has anything animated
+         */
+        boolean animate(boolean blink, boolean cycle);
+    }
+
+    private static final int BLINK_DELAY = 400; //milliseconds
+    private static final int CYCLE_DELAY = 200; //milliseconds
+    private static final int CYCLE_COLORS = 5;
+
+    private final List<Animated> animated = new ArrayList<>();
+    private final BooleanSupplier suspended;
+    private final Timer blink_timer;
+    private final Timer cycle_timer;
+    private final Color[] cycle_colors;
+    private final IndexColorModel[] cycle_icms;
+    private boolean blink = true;
+    private int cycle_count = 0;
+    private int cycle_idx = 0;
+    private boolean paused = false;
+
+    /**
+     * @param suspended while true ticks advance blink and cycle state but
+     * nothing is repainted, used during stack movement
+     */
+    public Animator(BooleanSupplier suspended) {
+        this.suspended = suspended;
+        cycle_colors = new Color[CYCLE_COLORS];
+        for (int i = 0; i < cycle_colors.length; i++) {
+            int cycle = 20 * i;
+            cycle_colors[cycle_colors.length - i - 1] = new Color(60 + cycle, 80 + cycle, 160 + cycle);
+        }
+        cycle_icms = new IndexColorModel[CYCLE_COLORS];
+        for (int i = 0; i < cycle_icms.length; i++) {
+            Color c = cycle_colors[i];
+            // index 0 transparent, index 1 the cycle color
+            cycle_icms[i] = new IndexColorModel(8, 2, new byte[]{0, (byte) c.getRed()},
+                    new byte[]{0, (byte) c.getGreen()}, new byte[]{0, (byte) c.getBlue()}, 0);
+        }
+        blink_timer = new Timer(BLINK_DELAY, e -> tick(true, false));
+        cycle_timer = new Timer(CYCLE_DELAY, e -> tick(false, true));
+    }
+
+    public <T extends Component & Animated> void register(T component) {
+        animated.add(component);
+    }
+
+    public void start() {
+        paused = false;
+        blink_timer.start();
+        cycle_timer.start();
+    }
+
+    /**
+     * Restart paused timers. Cheap, may be called on every paint.
+     */
+    public void wake() {
+        if (paused) {
+            start();
+        }
+    }
+
+    private void tick(boolean blink_tick, boolean cycle_tick) {
+        if (blink_tick) {
+            blink = !blink;
+        }
+        if (cycle_tick) {
+            cycle_count++;
+            if (cycle_count == CYCLE_COLORS) {
+                cycle_count = -2;
+            }
+            if (cycle_count >= 0) {
+                cycle_idx = cycle_count;
+            }
+        }
+        if (suspended.getAsBoolean()) {
+            return;
+        }
+        boolean active = false;
+        for (Animated a : animated) {
+            if (((Component) a).isShowing()) {
+                active |= a.animate(blink_tick, cycle_tick);
+            }
+        }
+        if (!active) {
+            paused = true;
+            blink_timer.stop();
+            cycle_timer.stop();
+        }
+    }
+
+    public boolean getBlink() {
+        return blink;
+    }
+
+    /**
+     * @return counter which changes on every cycle tick
+     */
+    public int getCycleCount() {
+        return cycle_count;
+    }
+
+    public Color getCycleColor() {
+        return cycle_colors[cycle_idx];
+    }
+
+    /**
+     * @return color which maps to index 1 of getCycleBaseICM()
+     */
+    public Color getCycleBaseColor() {
+        return cycle_colors[0];
+    }
+
+    /**
+     * @return color model to create cycled images with
+     */
+    public IndexColorModel getCycleBaseICM() {
+        return cycle_icms[0];
+    }
+
+    /**
+     * @return two color model, transparent and the current cycle color
+     */
+    public IndexColorModel getCycleICM() {
+        return cycle_icms[cycle_idx];
+    }
+}
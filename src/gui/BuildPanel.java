@@ -509,13 +509,11 @@ public class BuildPanel extends JPanel {
         } else {
             planet = nr;
         }
-        List<Structure> cl = game.getStructures();
+        List<Structure> cl = game.getAssetIndex().getStructures(game.getTurn(), planet);
         List<Structure> cl2 = new LinkedList<>();
         for (Structure structure : cl) {
-            if (structure.owner == game.getTurn() && structure.p_idx == planet) {
-                if (!game.getFaction(game.getTurn()).getResearch().can_build.get(structure.type).isEmpty()) {
-                    cl2.add(structure);
-                }
+            if (!game.getFaction(game.getTurn()).getResearch().can_build.get(structure.type).isEmpty()) {
+                cl2.add(structure);
             }
         }
         Collections.sort(cl2, Comp.city_name);
@@ -100,7 +100,7 @@ public class ByzantiumIIWindow extends JPanel {
             declare_emperor.setVisible(false);
         }
         if (game.getRegency().isMay_set_offices() && game.getRegency().getRegent() == game.getTurn()) {
-            game.getRegency().enforcePromisedMinistries();
+            game.getRegency().enforcePromisedMinistries(game);
         }
     }
 
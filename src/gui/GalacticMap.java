@@ -44,7 +44,7 @@ import util.WindowSize;
  *
  * @author joulupunikki
  */
-public class GalacticMap extends JPanel {
+public class GalacticMap extends JPanel implements Animator.Animated {
 
     /**
      *
@@ -72,7 +72,16 @@ public class GalacticMap extends JPanel {
         super.paintComponent(g);
 
         renderGalacticMap(g);
+        gui.getAnimator().wake();
+    }
 
+    @Override
+    public boolean animate(boolean blink, boolean cycle) {
+        // jump routes are always color cycled
+        if (cycle || (blink && (!map_type || game.getSelectedPoint() != null))) {
+            repaint();
+        }
+        return true;
     }
 
     public void renderGalacticMap(Graphics g) {
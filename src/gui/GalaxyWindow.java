@@ -58,7 +58,7 @@ import util.WindowSize;
  *
  * @author joulupunikki
  */
-public class GalaxyWindow extends JPanel {
+public class GalaxyWindow extends JPanel implements Animator.Animated {
     final int STARFLD2_W = 480;
     final int STARFLD2_H = 418;
     /**
@@ -145,7 +145,16 @@ public class GalaxyWindow extends JPanel {
         super.paintComponent(g);
 
         renderWindow(g);
+        gui.getAnimator().wake();
+    }
 
+    @Override
+    public boolean animate(boolean blink, boolean cycle) {
+        // jump routes are color cycled
+        if (cycle) {
+            repaint();
+        }
+        return true;
     }
 
     private void renderWindow(Graphics g) {
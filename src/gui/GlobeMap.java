@@ -45,7 +45,7 @@ import util.WindowSize;
  *
  * @author joulupunikki
  */
-public class GlobeMap extends JPanel {
+public class GlobeMap extends JPanel implements Animator.Animated {
 
     /**
      *
@@ -73,7 +73,17 @@ public class GlobeMap extends JPanel {
         super.paintComponent(g);
 
         renderGlobeMap(g);
+        gui.getAnimator().wake();
+    }
 
+    @Override
+    public boolean animate(boolean blink, boolean cycle) {
+        // the selected stack or the combat replay unit blinks
+        boolean blinking = !map_type || game.getSelectedPoint() != null;
+        if (blink && blinking) {
+            repaint();
+        }
+        return blinking;
     }
 
     public void renderGlobeMap(Graphics g) {
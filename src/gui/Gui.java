@@ -33,6 +33,8 @@ import galaxyreader.Unit;
 import game.Game;
 import game.Message;
 import game.PBEM;
+import game.Snapshot;
+import java.awt.AWTEvent;
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
 import java.awt.Color;
@@ -62,16 +64,17 @@ import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
 import java.awt.image.IndexColorModel;
 import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import javax.swing.BorderFactory;
 import javax.swing.JButton;
 import javax.swing.JDialog;
@@ -85,6 +88,7 @@ import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JProgressBar;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.Timer;
 import javax.swing.UIManager;
@@ -103,8 +107,10 @@ import state.State;
 import static state.State.saveMainGameState;
 import state.WS;
 import state.Wiz;
+import util.AssetCache;
 import util.C;
 import util.Comp;
+import util.CrashReporter;
 import util.FN;
 import util.G;
 import util.StackIterator;
@@ -249,18 +255,16 @@ public class Gui extends JFrame {
     private Timer stack_move_timer;
     private boolean stop_stack = false;
     private boolean stack_moving = false;
-    private boolean animation_blink = true;
+    private final Animator animator = new Animator(() -> stack_moving);
     private int stack_move_counter;
     private State state;
-    private int color_cycle_count;
-    private Color[] color_cycle_colors;
-    private Color color_cycle_color;
     private Unit drag_unit;
     private Point drag_point;
     private Unit info_unit;
 
     private boolean loadsave_win_up;
     private JDialog loadsave_dialog;
+    private JDialog turn_dialog;
     private CityDialog city_dialog;
     private CargoPanel.Win cargo_win;
     private boolean load_succesfull; // true iff load game ok
@@ -312,7 +316,7 @@ public class Gui extends JFrame {
         }
         Util.foundOrExit(galaxy_file_name);
         // create game object
-        game = new Game(galaxy_file_name, 14);
+        game = new Game(galaxy_file_name, 14, args);
         Phoenix.addBootMsg(" done.\nInitializing GUI ...");
         game.init(resources);
         setResDependentLAF();
@@ -382,6 +386,7 @@ public class Gui extends JFrame {
         // initialize game state
         this.setCursor(resources.getCursor(C.S_CURSOR_SCEPTOR));
         Phoenix.addBootMsg(" done.");
+        AssetCache.flush();
         state = MM1.get();
 
         this.pack();
@@ -426,19 +431,33 @@ public class Gui extends JFrame {
 
     private void setUpAnimation() {
         /*
-         * set animation timer
+         * set stack blink and color cycle animation
          */
-        int delay = 400; //milliseconds
-        ActionListener timer_listener = new ActionListener() {
-            public void actionPerformed(ActionEvent evt) {
-                animation_blink = !animation_blink;
-                if (!stack_moving) {
-                    main_windows.repaint();
-                }
+        animator.register(planet_map);
+        animator.register(space_map);
+        animator.register(galaxy_window);
+        animator.register(galactic_map);
+        animator.register(galactic_map_cw);
+        animator.register(galactic_map_uiw);
+        animator.register(galactic_map_ciw);
+        animator.register(globe_map);
+        animator.register(globe_map_cw);
+        animator.register(globe_map_uiw);
+        animator.register(globe_map_ciw);
+        animator.start();
+
+        /*
+         * animation ticks repaint only what blinks or cycles, so repaint the
+         * main windows after each mouse button, wheel or key press, the game
+         * state shown may have changed even if the handler did not repaint
+         */
+        Toolkit.getDefaultToolkit().addAWTEventListener(e -> {
+            int id = e.getID();
+            if (!stack_moving && (id == MouseEvent.MOUSE_RELEASED || id == MouseEvent.MOUSE_WHEEL
+                    || id == KeyEvent.KEY_RELEASED)) {
+                main_windows.repaint();
             }
-        };
-        Timer anim_timer = new Timer(delay, timer_listener);
-        anim_timer.start();
+        }, AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_WHEEL_EVENT_MASK | AWTEvent.KEY_EVENT_MASK);
 
         /*
         * set stack movement timer and listener,
@@ -450,28 +469,6 @@ public class Gui extends JFrame {
             }
         };
         stack_move_timer = new Timer(move_delay, stack_move_listener);
-
-        setColorCycle();
-        color_cycle_count = 0;
-        color_cycle_color = color_cycle_colors[0];
-        int cycle_delay = 200; //milliseconds
-        ActionListener cycle_listener = new ActionListener() {
-            public void actionPerformed(ActionEvent evt) {
-
-                if (!stack_moving) {
-                    main_windows.repaint();
-                }
-                color_cycle_count++;
-                if (color_cycle_count == 5) {
-                    color_cycle_count = -2;
-                }
-                if (color_cycle_count >= 0) {
-                    color_cycle_color = color_cycle_colors[color_cycle_count];
-                }
-            }
-        };
-        Timer cycle_timer = new Timer(cycle_delay, cycle_listener);
-        cycle_timer.start();
     }
 
     private void assembleMainWindows() {
@@ -1562,6 +1559,7 @@ public class Gui extends JFrame {
         game.setJumpPath(null);
         // to update build city menu item
         SU.setStateUpKeep(state);
+        main_windows.repaint();
     }
 
     public Resource getResources() {
@@ -1624,7 +1622,11 @@ public class Gui extends JFrame {
      * @return the color_cycle_count
      */
     public int getColorCycleCount() {
-        return color_cycle_count;
+        return animator.getCycleCount();
+    }
+
+    public Animator getAnimator() {
+        return animator;
     }
 
     public GalaxyWindow getGalaxyWindow() {
@@ -1817,6 +1819,12 @@ public class Gui extends JFrame {
 //        city_dialog.pack();
 //    }
     public JDialog showProgressBar(String text) {
+        JProgressBar progress_bar = new JProgressBar();
+        progress_bar.setIndeterminate(true);
+        return showProgressBar(text, progress_bar);
+    }
+
+    private JDialog showProgressBar(String text, JProgressBar progress_bar) {
         JDialog dialog = new JDialog(this, text, true);
         int p_width = this.getWidth();
         int p_height = this.getHeight();
@@ -1835,9 +1843,7 @@ public class Gui extends JFrame {
                 ;
             }
         });
-        JProgressBar progress_bar = new JProgressBar();
         progress_bar.setSize(width, heigth);
-        progress_bar.setIndeterminate(true);
         dialog.add(progress_bar);
         dialog.pack();
 //        dialog.setVisible(true);
@@ -1877,13 +1883,14 @@ public class Gui extends JFrame {
             setGameReferences();
             game.setPath(null);
             game.setJumpPath(null);
+            main_windows.repaint();
             PBEM pbem = game.getEfs_ini().pbem;
             RobotTester.setWaitState(false); // tell Robot tester we are online
             if (pbem.pbem) {
 
                 if (pbem.end_turn) {
                     pbem.end_turn = false;
-                    game.endTurn();
+                    endTurn();
                     //pbem_gui.testDATAHashes(this); // fixme #98
                 }
                 if (pbem.password_revocation) {  // if password revocation sequence
@@ -1894,7 +1901,7 @@ public class Gui extends JFrame {
                             pbem_gui.revokePassword(); // zero password of revoked player
                             if (!pbem.revocation_action) { // if action == set to computer control
                                 game.setFactionPlayer(pbem.revoked_player, false); // set to computer control
-                                game.endTurn(); // process turn
+                                endTurn(); // process turn
                                 pbem_gui.zeroRevocationConfirm(); // zero revocation confirmation passwords
                                 pbem.revoked_player = -1; // set revoked player to -1
                             }
@@ -2017,10 +2024,15 @@ public class Gui extends JFrame {
 //                ;
 //            }
             load_succesfull = true; // assume true
-            try (FileInputStream in = new FileInputStream(load_name);
-                    GZIPInputStream gis = new GZIPInputStream(in);
-                    ObjectInputStream s = new ObjectInputStream(gis)) {
-                Game tmp = (Game) s.readObject();
+            try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(load_name))) {
+                Game tmp;
+                if (Snapshot.isSnapshot(in)) {
+                    tmp = Snapshot.read(in);
+                } else { // saves made before snapshots were introduced
+                    tmp = (Game) new ObjectInputStream(new GZIPInputStream(in)).readObject();
+                }
+                tmp.continueCombatTrace(game);
+                tmp.continueProfiler(game);
                 game = tmp;
                 //System.out.println("after read object");
 //                space_map.setGame(game);
@@ -2054,6 +2066,113 @@ public class Gui extends JFrame {
         }
     }
 
+    /**
+     * End the current human player turn. The turns of the other factions are
+     * processed by a TurnWorker while a modal progress dialog shows their
+     * progress and blocks input, and the main windows are replaced by a still
+     * image of their last frame so that nothing reads game state while it is
+     * being changed. Returns on the EDT after the turn has been processed.
+     */
+    public void endTurn() {
+        RobotTester.setWaitState(true); // tell Robot tester we are unresponsive
+        JProgressBar progress_bar = new JProgressBar();
+        progress_bar.setIndeterminate(true);
+        progress_bar.setStringPainted(true);
+        progress_bar.setString("");
+        turn_dialog = showProgressBar("Processing turn", progress_bar);
+        freezeMainWindows(true);
+        Cursor cursor = this.getCursor();
+        this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new TurnWorker(game, progress_bar).execute();
+
+        turn_dialog.setVisible(true);
+
+        freezeMainWindows(false);
+        this.setCursor(cursor);
+        RobotTester.setWaitState(false); // tell Robot tester we are online
+    }
+
+    /**
+     * Show a still image of the main windows in the glass pane and hide the
+     * main windows, or undo that.
+     *
+     * @param freeze
+     */
+    private void freezeMainWindows(boolean freeze) {
+        if (freeze) {
+            BufferedImage still = new BufferedImage(Math.max(1, main_windows.getWidth()),
+                    Math.max(1, main_windows.getHeight()), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = still.createGraphics();
+            main_windows.paint(g);
+            g.dispose();
+            Point p = SwingUtilities.convertPoint(main_windows, 0, 0, getRootPane());
+            JPanel glass = new JPanel() {
+                @Override
+                protected void paintComponent(Graphics g) {
+                    g.drawImage(still, p.x, p.y, null);
+                }
+            };
+            glass.setOpaque(false);
+            setGlassPane(glass);
+            glass.setVisible(true);
+            main_windows.setVisible(false);
+        } else {
+            main_windows.setVisible(true);
+            getGlassPane().setVisible(false);
+            main_windows.repaint();
+        }
+    }
+
+    /**
+     * Runs Game.endTurn() off the EDT and shows its progress.
+     */
+    private class TurnWorker extends SwingWorker<Void, String> {
+
+        private Game game;
+        private JProgressBar progress_bar;
+
+        public TurnWorker(Game game, JProgressBar progress_bar) {
+            this.game = game;
+            this.progress_bar = progress_bar;
+        }
+
+        public Void doInBackground() {
+            while (!turn_dialog.isVisible()) {
+                try {
+                    Thread.sleep(50);
+                } catch (Exception e) {
+                    ;
+                }
+
+            }
+            game.setTurnProgress((year, faction, phase) -> publish(year + " "
+                    + Util.getFactionName(faction) + ": " + phase.text));
+            try {
+                game.endTurn();
+            } finally {
+                game.setTurnProgress(null);
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<String> chunks) {
+            progress_bar.setString(chunks.get(chunks.size() - 1));
+        }
+
+        public void done() {
+            turn_dialog.dispose();
+            main_windows.repaint();
+            try {
+                get();
+            } catch (InterruptedException | ExecutionException ex) {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                Util.logEx(null, cause, "Turn processing failed");
+                CrashReporter.showCrashReport(cause);
+            }
+        }
+    }
+
     private class SaveWorker extends SwingWorker<Void, Void> {
 
         private Gui gui;
@@ -2073,12 +2192,8 @@ public class Gui extends JFrame {
                 }
 
             }
-            try (FileOutputStream f = new FileOutputStream(save_name);
-                    GZIPOutputStream gos = new GZIPOutputStream(f);
-                    ObjectOutputStream s = new ObjectOutputStream(gos)) {
-
-                s.writeObject(game);
-                s.flush();
+            try (BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(save_name))) {
+                Snapshot.write(game, out);
                 //System.out.println("after flush");
             } catch (Throwable ex) {
                 Util.logEx(null, ex, "Save game failed");
@@ -2096,13 +2211,15 @@ public class Gui extends JFrame {
     public void toMainMenu() {
         RobotTester.setWaitState(true); // tell Robot tester we are unresponsive
         setCurrentState(WS.get());
+        Game previous = game;
         if (args.hasOption(C.OPT_NAMED_GALAXY)) {
-            game = new Game(args.getOptionValue(C.OPT_NAMED_GALAXY), 14);
-            game.init(resources);
+            game = new Game(args.getOptionValue(C.OPT_NAMED_GALAXY), 14, args);
         } else {
-            game = new Game(FN.S_GALAXY_GAL, 14);
-            game.init(resources);
+            game = new Game(FN.S_GALAXY_GAL, 14, args);
         }
+        game.continueCombatTrace(previous);
+        game.continueProfiler(previous);
+        game.init(resources);
         setGameReferences();
         initGui();
         pbem_gui.getDATAHashes();
@@ -2161,6 +2278,7 @@ public class Gui extends JFrame {
         globe_window.setGame(game);
         State.setGameRef(game);
         Comp.setGame(game);
+        game.setMainArgs(args);
         game.initAI(false);
 //        game.AIAfterLoad();
         game.setPath(null);
@@ -2476,16 +2594,7 @@ public class Gui extends JFrame {
     }
 
     public Color getColorCycleColor() {
-        return color_cycle_color;
-    }
-
-    public void setColorCycle() {
-        color_cycle_colors = new Color[5];
-        for (int i = 0; i < color_cycle_colors.length; i++) {
-            int cycle = 20 * i;
-            color_cycle_colors[color_cycle_colors.length - i - 1] = new Color(60 + cycle, 80 + cycle, 160 + cycle);
-
-        }
+        return animator.getCycleColor();
     }
 
     public void startStackMove() {
@@ -2509,7 +2618,7 @@ public class Gui extends JFrame {
     }
 
     public boolean getAnimationBlink() {
-        return animation_blink;
+        return animator.getBlink();
     }
 
     public void setDefaultUncaughtExceptionHandler() {
@@ -2602,7 +2711,7 @@ public class Gui extends JFrame {
         return planet_window;
     }
 
-    public JPanel getPlanetMap() {
+    public PlanetMap getPlanetMap() {
         return planet_map;
     }
 
@@ -2673,7 +2782,7 @@ public class Gui extends JFrame {
             gui.game.setFactionPlayer(C.STIGMATA, true);
             gui.game.beginGame();
             SU.selectNextUnmovedUnit();
-            gui.game.endTurn();
+            gui.endTurn();
         }
     }
 
@@ -2732,6 +2841,10 @@ public class Gui extends JFrame {
      */
     public void setStack_moving(boolean stack_moving) {
         this.stack_moving = stack_moving;
+        if (!stack_moving) {
+            // frames of the move repainted only the hexes moved between
+            main_windows.repaint();
+        }
     }
 
     /**
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package gui;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import util.C;
+
+/**
+ * Cache of fully composited planet map hex tiles. A composited tile is all
+ * the layers given by PlanetMap.getTileNo() drawn on top of each other, and is
+ * keyed by the tile set, whether the hex is spotted and the layer tile
+ * numbers. Changes of terrain, roads, structures or spotting change the key,
+ * so stale tiles are never used and just age out of the cache.
+ * <p>
+ * Tiles are stored at display resolution as runs of opaque pixels, one row
+ * at a time, and are drawn with WritableRaster.setDataElements() instead of
+ * per pixel setPixel() calls. Transparent pixels are not written so
+ * overlapping hexes combine as before.
+ *
+ * @author joulupunikki
+ */
+public class HexTileCache {
+
+    /**
+     * Draws the layers of one hex, for tiles not in the cache.
+     */
+    public interface Composer {
+
+        /**
+         * Draw tile_no layers with setPixel() to wr at (0, 0), at display
+         * resolution.
+         *
+         * @param tile_no
+         * @param wr
+         */
+        void compose(int[] tile_no, WritableRaster wr);
+    }
+
+    private static final int MAX_TILES = 2048;
+    private static final int TRANSPARENT = -1;
+    // key header, tile set and spotted flag, before the layer tile numbers
+    private static final int HEADER = 2;
+
+    private final Map<Key, Tile> tiles = new LinkedHashMap<Key, Tile>(256, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Tile> eldest) {
+            return size() > MAX_TILES;
+        }
+    };
+    private final Key probe = new Key();
+    private final WritableRaster scratch;
+    private final int[] scratch_row;
+
+    /**
+     * @param is_double true if tiles are drawn at double resolution
+     */
+    public HexTileCache(boolean is_double) {
+        int scale = is_double ? 2 : 1;
+        scratch = Raster.createBandedRaster(DataBuffer.TYPE_INT, C.STRUCT_BIN_WIDTH * scale,
+                C.STRUCT_BIN_HEIGHT * scale, 1, null);
+        scratch_row = new int[scratch.getWidth()];
+    }
+
+    /**
+     * Draw a composited hex tile to wr with its top left corner at (x, y),
+     * clipped to the right and bottom edges of wr.
+     *
+     * @param x display x coordinate
+     * @param y display y coordinate
+     * @param tile_set tile set of the planet
+     * @param spotted true if the hex has been spotted by the viewing faction
+     * @param tile_no layer tile numbers from PlanetMap.getTileNo()
+     * @param composer draws the tile if it is not cached
+     * @param wr
+     */
+    public void draw(int x, int y, int tile_set, boolean spotted, int[] tile_no,
+            Composer composer, WritableRaster wr) {
+        probe.set(tile_set, spotted, tile_no);
+        Tile tile = tiles.get(probe);
+        if (tile == null) {
+            tile = compose(tile_no, composer);
+            tiles.put(new Key(probe), tile);
+        }
+        int width = wr.getWidth();
+        int height = wr.getHeight();
+        for (int i = 0; i < tile.run_y.length; i++) {
+            int ty = y + tile.run_y[i];
+            int tx = x + tile.run_x[i];
+            int w = Math.min(tile.runs[i].length, width - tx);
+            if (ty < height && w > 0) {
+                wr.setDataElements(tx, ty, w, 1, tile.runs[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        tiles.clear();
+    }
+
+    private Tile compose(int[] tile_no, Composer composer) {
+        int width = scratch.getWidth();
+        int height = scratch.getHeight();
+        Arrays.fill(scratch_row, TRANSPARENT);
+        for (int j = 0; j < height; j++) {
+            scratch.setSamples(0, j, width, 1, 0, scratch_row);
+        }
+        composer.compose(tile_no, scratch);
+        int nr_runs = 0;
+        for (int j = 0; j < height; j++) {
+            scratch.getSamples(0, j, width, 1, 0, scratch_row);
+            for (int i = 0; i < width; i++) {
+                if (scratch_row[i] != TRANSPARENT && (i == 0 || scratch_row[i - 1] == TRANSPARENT)) {
+                    nr_runs++;
+                }
+            }
+        }
+        Tile tile = new Tile(nr_runs);
+        int k = 0;
+        for (int j = 0; j < height; j++) {
+            scratch.getSamples(0, j, width, 1, 0, scratch_row);
+            int i = 0;
+            while (i < width) {
+                if (scratch_row[i] == TRANSPARENT) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < width && scratch_row[i] != TRANSPARENT) {
+                    i++;
+                }
+                byte[] run = new byte[i - start];
+                for (int m = 0; m < run.length; m++) {
+                    run[m] = (byte) scratch_row[start + m];
+                }
+                tile.run_x[k] = start;
+                tile.run_y[k] = j;
+                tile.runs[k++] = run;
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Opaque pixel runs of a composited tile, run k starts at (run_x[k],
+     * run_y[k]).
+     */
+    private static class Tile {
+
+        final int[] run_x;
+        final int[] run_y;
+        final byte[][] runs;
+
+        Tile(int nr_runs) {
+            run_x = new int[nr_runs];
+            run_y = new int[nr_runs];
+            runs = new byte[nr_runs][];
+        }
+    }
+
+    /**
+     * Tile set, spotted flag and layer tile numbers. The probe key reused for
+     * lookups is copied when a tile is added.
+     */
+    private static class Key {
+
+        int[] sig = new int[0];
+        int hash;
+
+        Key() {
+        }
+
+        Key(Key key) {
+            sig = key.sig.clone();
+            hash = key.hash;
+        }
+
+        void set(int tile_set, boolean spotted, int[] tile_no) {
+            if (sig.length != tile_no.length + HEADER) {
+                sig = new int[tile_no.length + HEADER];
+            }
+            sig[0] = tile_set;
+            sig[1] = spotted ? 1 : 0;
+            System.arraycopy(tile_no, 0, sig, HEADER, tile_no.length);
+            hash = Arrays.hashCode(sig);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && Arrays.equals(((Key) o).sig, sig);
+        }
+    }
+}
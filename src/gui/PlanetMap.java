@@ -40,9 +40,12 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
 import java.awt.image.WritableRaster;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -61,7 +64,7 @@ import util.WindowSize;
  *
  * @author joulupunikki
  */
-public class PlanetMap extends JPanel {
+public class PlanetMap extends JPanel implements Animator.Animated {
 
     /**
      *
@@ -85,6 +88,23 @@ public class PlanetMap extends JPanel {
     BufferedImage bi;
     WritableRaster horiz_edge;
     WritableRaster vert_edge;
+    int tile_set;
+    HexTileCache tile_cache;
+    HexTileCache.Composer tile_composer;
+    // terrain and grid, redrawn only when the view or map has changed and
+    // always reused during stack move and blink/cycle animation
+    BufferedImage layers;
+    // what layers were drawn of, see isLayersStale()
+    PlanetGrid layers_grid;
+    int layers_origin_x;
+    int layers_origin_y;
+    int layers_faction;
+    int layers_changes;
+    // shield outline, drawn with the current cycle color model
+    BufferedImage shield_layer;
+    Rectangle shield_bounds;
+    // area repainted by animate() and not yet painted
+    Rectangle anim_clip;
 
     static final Color PATH_GREEN = new Color(96, 208, 64);
     static final Color PATH_RED = new Color(160, 60, 20);
@@ -107,16 +127,49 @@ public class PlanetMap extends JPanel {
         WritableRaster wr = tmp.getRaster();
         horiz_edge = wr.createWritableChild(0, 0, ws.planet_map_width, d_y, 0, 0, null);
         vert_edge = wr.createWritableChild(0, 0, d_x, ws.planet_map_height, 0, 0, null);
+        tile_cache = new HexTileCache(ws.is_double);
+        int[] pixel_data = new int[1];
+        tile_composer = (tile_no, tile_wr) -> writeHex2(0, 0, 0, pixel_data, hex_tiles, tile_no, tile_wr);
     }
 
     public void setGame(Game game) {
         this.game = game;
+        layers_grid = null;
     }
 
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
         renderPlanetMap(g);
+        gui.getAnimator().wake();
+    }
 
+    /**
+     * Repaint the selected stack on blink ticks and the shield on cycle ticks.
+     * Paints of only these areas reuse layers.
+     */
+    @Override
+    public boolean animate(boolean blink, boolean cycle) {
+        Rectangle selected = null;
+        Point p = game.getSelectedPoint();
+        if (p != null && 0 <= p.x && p.x < C.PLANET_MAP_WIDTH && 0 <= p.y && p.y < C.PLANET_MAP_COLUMNS) {
+            selected = getHexBounds(game.getPlanetGrid(game.getCurrentPlanetNr()).getHex(p.x, p.y));
+        }
+        if (blink && selected != null) {
+            repaintAnimated(selected);
+        }
+        if (cycle && shield_bounds != null) {
+            repaintAnimated(shield_bounds);
+        }
+        return selected != null || shield_bounds != null;
+    }
+
+    private void repaintAnimated(Rectangle r) {
+        if (anim_clip == null) {
+            anim_clip = new Rectangle(r);
+        } else {
+            anim_clip.add(r);
+        }
+        repaint(r);
     }
 
     public void renderPlanetMap(Graphics g) {
@@ -126,7 +179,7 @@ public class PlanetMap extends JPanel {
 //        int tile_set_type = game.getGalaxy().game.getCurrentPlanetNr();
 //        hex_tiles = Util.loadHexTiles("bin/efstile0.bin", 134);
 //        structures = Util.loadHexTiles("bin/struct0.bin", 32);
-        int tile_set = game.getPlanet(game.getCurrentPlanetNr()).tile_set_type;
+        tile_set = game.getPlanet(game.getCurrentPlanetNr()).tile_set_type;
         hex_tiles = Gui.getHexTiles(tile_set);
         structures = Gui.getStructureTiles(tile_set);
 
@@ -135,18 +188,17 @@ public class PlanetMap extends JPanel {
         hex_grid = game.getPlanetGrid(game.getCurrentPlanetNr()).getMapArray();
         current_faction = game.getTurn();
 //        structures = Gui.getStructures();
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, ws.planet_map_width, ws.planet_map_height);
-
-        drawHexTiles(g, hex_tiles, bi);
-
-        Graphics2D g2d = (Graphics2D) g;
-        g2d.drawImage(bi, null, 0, 0);
-
-        drawHexGrid(g);
-
-        drawShield(g);
-
+        Rectangle clip = g.getClipBounds();
+        boolean animation_frame = anim_clip != null && clip != null && anim_clip.contains(clip);
+        anim_clip = null;
+        if (layers == null || !(isMoveFrame() || animation_frame) && isLayersStale()) {
+            drawLayers();
+        }
+        g.drawImage(layers, 0, 0, null);
+        if (shield_bounds != null) {
+            g.drawImage(new BufferedImage(gui.getAnimator().getCycleICM(),
+                    shield_layer.getRaster(), false, null), 0, 0, null);
+        }
         drawStructureNames(g);
 
         drawUnits(g);
@@ -162,6 +214,104 @@ public class PlanetMap extends JPanel {
 //        drawMoveCosts(g);
     }
 
+    /**
+     * Between hexes of a stack move only the moving stack changes, so the
+     * layers below units need not be redrawn.
+     *
+     * @return true if painting an intermediate frame of stack movement
+     */
+    private boolean isMoveFrame() {
+        int stack_move_counter = gui.getStackMoveCounter();
+        return gui.isStack_moving() && 0 < stack_move_counter && 20 > stack_move_counter;
+    }
+
+    /**
+     * Layers need redrawing after the map has been scrolled, the planet or
+     * faction in turn switched, or terrain, structures or visibility changed.
+     *
+     * @return true if layers do not show the current map view
+     */
+    private boolean isLayersStale() {
+        PlanetGrid grid = game.getPlanetGrid(game.getCurrentPlanetNr());
+        Point origin = game.getMapOrigin();
+        return grid != layers_grid || origin.x != layers_origin_x || origin.y != layers_origin_y
+                || current_faction != layers_faction || grid.getMapChanges() != layers_changes;
+    }
+
+    /**
+     * Draw terrain and hex grid to the layers back buffer, and the shield to
+     * shield_layer.
+     */
+    private void drawLayers() {
+        layers_grid = game.getPlanetGrid(game.getCurrentPlanetNr());
+        layers_origin_x = game.getMapOrigin().x;
+        layers_origin_y = game.getMapOrigin().y;
+        layers_faction = current_faction;
+        layers_changes = layers_grid.getMapChanges();
+        if (layers == null) {
+            layers = new BufferedImage(ws.planet_map_width, ws.planet_map_height, BufferedImage.TYPE_INT_RGB);
+            shield_layer = new BufferedImage(ws.planet_map_width, ws.planet_map_height,
+                    BufferedImage.TYPE_BYTE_INDEXED, gui.getAnimator().getCycleBaseICM());
+        }
+        Graphics2D g = layers.createGraphics();
+        g.setColor(Color.BLACK);
+        g.fillRect(0, 0, ws.planet_map_width, ws.planet_map_height);
+
+        drawHexTiles(g, hex_tiles, bi);
+
+        g.drawImage(bi, null, 0, 0);
+
+        drawHexGrid(g);
+        g.dispose();
+
+        if (shield_bounds != null) {
+            Arrays.fill(((DataBufferByte) shield_layer.getRaster().getDataBuffer()).getData(), (byte) 0);
+        }
+        g = shield_layer.createGraphics();
+        drawShield(g);
+        g.dispose();
+    }
+
+    /**
+     * Repaint an intermediate frame of stack movement. Only the hexes the
+     * stack moves between are repainted.
+     */
+    public void repaintMove() {
+        LinkedList<Hex> path = game.getPath();
+        Rectangle from = null;
+        Rectangle to = null;
+        if (path != null && path.size() > 1) {
+            from = getHexBounds(path.get(0));
+            to = getHexBounds(path.get(1));
+        }
+        if (from == null || to == null) {
+            repaint();
+            return;
+        }
+        from.add(to);
+        repaint(from);
+    }
+
+    /**
+     * @param hex
+     * @return screen area of hex on the current map view, or null if not in
+     * view
+     */
+    private Rectangle getHexBounds(Hex hex) {
+        Point origin = game.getMapOrigin();
+        int col = (hex.getX() - origin.x + C.PLANET_MAP_WIDTH) % C.PLANET_MAP_WIDTH;
+        int row = hex.getY() - origin.y;
+        if (col >= 13 || row < 0 || row >= 10) {
+            return null;
+        }
+        int dip = hex.getX() % 2 == 0 ? 20 : 0;
+        Rectangle rv = new Rectangle(38 * col, 40 * row + dip, C.STRUCT_BIN_WIDTH, C.STRUCT_BIN_HEIGHT);
+        if (ws.is_double) {
+            rv.setBounds(2 * rv.x, 2 * rv.y, 2 * rv.width, 2 * rv.height);
+        }
+        return rv;
+    }
+
     public void drawMoveCosts(Graphics g) {
 
         Point origin = game.getMapOrigin();
@@ -947,13 +1097,6 @@ public class PlanetMap extends JPanel {
 
         Point origin = game.getMapOrigin();
 
-        boolean stack_moving = gui.isStack_moving();
-        int stack_move_counter = gui.getStackMoveCounter();
-
-        if (stack_moving && 0 < stack_move_counter && 20 > stack_move_counter) {
-            return;
-        }
-
         wr.setRect(0, 0, horiz_edge);
         wr.setRect(0, 0, vert_edge);
         wr.setRect(wr.getWidth() - vert_edge.getWidth(), 0, vert_edge);
@@ -999,7 +1142,7 @@ public class PlanetMap extends JPanel {
         int origin_x = origin.x;
         int origin_y = origin.y;
 
-        int[] pixel_data = new int[1];
+        int scale = ws.is_double ? 2 : 1;
         int x = 0;
         int y = 0;
         int counter = 0;
@@ -1024,9 +1167,8 @@ public class PlanetMap extends JPanel {
 
                 //skip top j when i % 2 == 0
 //                if (j != origin_y || (i % 2 != 0)) {
-                if (!stack_moving || 0 >= stack_move_counter || 20 <= stack_move_counter) {
-                    writeHex2(x, y, dip, pixel_data, hex_tiles, tile_no, wr);
-                }
+                tile_cache.draw(x * scale, (y + dip) * scale, tile_set,
+                        current_hex.isSpotted(current_faction), tile_no, tile_composer, wr);
 //                }
                 //                int t_idx = 0;
 //                    writeUnit(g, x, y, dip, pixel_data, unit_icons, tile_no, wr);
@@ -1985,6 +2127,7 @@ public class PlanetMap extends JPanel {
     }
 
     public void drawShield(Graphics g) {
+        shield_bounds = null;
         Structure shield = game.getPlanet(game.getCurrentPlanetNr()).getShield();
         if (shield != null && game.getEfs_ini().shield_radius > -1) {
             shielded_hexes = Util.getHexesWithinRadiusOf(game.getHexFromPXY(shield.p_idx, shield.x, shield.y), game.getEfs_ini().shield_radius, null);
@@ -1992,7 +2135,7 @@ public class PlanetMap extends JPanel {
             return;
         }
         Point origin = game.getMapOrigin();
-        g.setColor(gui.getColorCycleColor());
+        g.setColor(gui.getAnimator().getCycleBaseColor());
         int origin_x = origin.x;
         int origin_y = origin.y;
 
@@ -2042,7 +2185,13 @@ public class PlanetMap extends JPanel {
                     //skip top j when i % 2 == 0
 //                if ((i != 0 || (j % 2 != game.getMapOrigin().x % 2))) {
                     if (i % 2 != game.getMapOrigin().x % 2 || j - origin_y != 9) {
-
+                        Rectangle r = new Polygon(x_p, y_p, x_p.length).getBounds();
+                        r.grow(1, 1);
+                        if (shield_bounds == null) {
+                            shield_bounds = r;
+                        } else {
+                            shield_bounds.add(r);
+                        }
                         g.drawPolyline(x_p, y_p, x_p.length);
                         for (int k = 0; k < x_p.length; k++) {
                             y_p[k]--;
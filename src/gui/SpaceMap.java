@@ -48,10 +48,12 @@ import java.awt.image.BufferedImage;
 import java.awt.image.IndexColorModel;
 import java.awt.image.WritableRaster;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
 import javax.swing.JCheckBox;
 import javax.swing.JPanel;
+import util.AssetCache;
 import util.C;
 import util.FN;
 import util.RingCounter;
@@ -65,7 +67,7 @@ import util.WindowSize;
  *
  * @author joulupunikki
  */
-public class SpaceMap extends JPanel {
+public class SpaceMap extends JPanel implements Animator.Animated {
 
     /**
      *
@@ -91,6 +93,8 @@ public class SpaceMap extends JPanel {
     private Gui gui;
     private Game game;
     private static int[][] planet_images;
+    // planet_images scaled 2x, null unless ws.is_double
+    private static int[][] planet_images_2x;
     private int[][] unit_icons;
     private WindowSize ws;
     private IndexColorModel color_index;
@@ -100,6 +104,10 @@ public class SpaceMap extends JPanel {
     private static final long MULTI_CLICK_INTERVAL = (long) (int) Toolkit.getDefaultToolkit().getDesktopProperty("awt.multiClickInterval");
     private static int[] planet_types;
     private BufferedImage bi;
+    // starfield and squares, redrawn when map_key changes
+    private BufferedImage map_layer;
+    private int[] map_key;
+    private int[] map_key_tmp;
 
     public SpaceMap(Gui gui) {
         this.gui = gui;
@@ -177,12 +185,35 @@ public class SpaceMap extends JPanel {
         super.paintComponent(g);
 
         renderSpaceMap(g);
+        gui.getAnimator().wake();
+    }
 
+    /**
+     * Planets rotate and jump routes are color cycled so every cycle tick
+     * repaints the map, whose starfield and squares come from map_layer. On
+     * blink ticks only the square of the selected stack is repainted.
+     */
+    @Override
+    public boolean animate(boolean blink, boolean cycle) {
+        if (cycle) {
+            repaint();
+        } else if (blink) {
+            Point p = game.getSelectedPoint();
+            Point origin = game.getSpaceMapOrigin();
+            if (p != null && origin.x <= p.x && p.x < origin.x + 15
+                    && origin.y <= p.y && p.y < origin.y + 13) {
+                int dx = ws.space_map_square_width;
+                int dy = ws.space_map_square_height;
+                // icons of several factions are stacked with a downward offset
+                repaint((p.x - origin.x) * dx, (p.y - origin.y) * dy, dx + 1, 2 * dy + 1);
+            }
+        }
+        return true;
     }
 
     public void renderSpaceMap(Graphics g) {
 
-        drawMap(g);
+        drawMapLayer(g);
         drawJumpRoutes(g);
         drawPlanets(g);
         drawUnits(g);
@@ -292,7 +323,7 @@ public class SpaceMap extends JPanel {
                     int[] planet_image = null;
                     idx = type * PLANET_PHASES + ((idx + 7 * galaxy_grid[i][j].planet.index) % PLANET_PHASES);
                     if (ws.is_double) {
-                        planet_image = Util.scale2XImage(planet_images[idx], 1024, 32);
+                        planet_image = planet_images_2x[idx];
                     } else {
                         planet_image = planet_images[idx];
                     }
@@ -312,6 +343,45 @@ public class SpaceMap extends JPanel {
 
     }
 
+    /**
+     * Draw the starfield and squares with drawMap() from a back buffer, which
+     * is redrawn only when the view origin, square stack owners or the
+     * coordinate option have changed. Planets, jump routes and units are
+     * animated and drawn on top every time.
+     *
+     * @param g
+     */
+    private void drawMapLayer(Graphics g) {
+        Square[][] galaxy_grid = game.getGalaxyMap().getGalaxyGrid();
+        Point origin = game.getSpaceMapOrigin();
+        if (map_key_tmp == null) {
+            map_key_tmp = new int[3 + 15 * 13];
+        }
+        int k = 0;
+        map_key_tmp[k++] = origin.x;
+        map_key_tmp[k++] = origin.y;
+        map_key_tmp[k++] = ((JCheckBox) gui.getGuiOpt().get(OptionsPanel.GUI_OPT.HEX_XY)).isSelected() ? 1 : 0;
+        for (int i = origin.x; i < origin.x + 15; i++) {
+            for (int j = origin.y; j < origin.y + 13; j++) {
+                map_key_tmp[k++] = galaxy_grid[i][j].stack_owner;
+            }
+        }
+        if (map_layer == null || !Arrays.equals(map_key, map_key_tmp)) {
+            if (map_layer == null) {
+                map_layer = new BufferedImage(ws.space_map_width, ws.space_map_height, BufferedImage.TYPE_INT_RGB);
+            }
+            Graphics2D lg = map_layer.createGraphics();
+            drawMap(lg);
+            lg.dispose();
+            int[] tmp = map_key;
+            map_key = map_key_tmp;
+            map_key_tmp = tmp;
+        }
+        g.drawImage(map_layer, 0, 0, null);
+        // drawPlanets() writes planet names in the font set by drawMap()
+        g.setFont(new Font("Arial", Font.PLAIN, 10));
+    }
+
     /**
      * Draw planets and squares.
      *
@@ -595,10 +665,24 @@ public class SpaceMap extends JPanel {
     }
 
     public void loadPlanetImages() {
+        String[] sources = {FN.S_EFSPLAN_BIN, FN.S_EFS_PAL};
+        planet_images = AssetCache.get("planets:" + FN.S_EFSPLAN_BIN, sources, this::decodePlanetImages);
+        if (ws.is_double) {
+            planet_images_2x = AssetCache.get("planets:2x:" + FN.S_EFSPLAN_BIN, sources, () -> {
+                int[][] ret = new int[planet_images.length][];
+                for (int i = 0; i < ret.length; i++) {
+                    ret[i] = Util.scale2XImage(planet_images[i], C.EFSPLAN_BIN_P_SIZE, 32);
+                }
+                return ret;
+            });
+        }
+    }
+
+    private int[][] decodePlanetImages() {
 
-        planet_images = new int[C.EFSPLAN_BIN_LENGTH + 4 * PLANET_PHASES][C.EFSPLAN_BIN_P_SIZE];
+        int[][] images = new int[C.EFSPLAN_BIN_LENGTH + 4 * PLANET_PHASES][C.EFSPLAN_BIN_P_SIZE];
         for (int i = 0; i < C.EFSPLAN_BIN_LENGTH; i++) {
-            planet_images[i] = Util.readImageData(FN.S_EFSPLAN_BIN,
+            images[i] = Util.readImageData(FN.S_EFSPLAN_BIN,
                     i * C.EFSPLAN_BIN_P_SIZE,
                     C.EFSPLAN_BIN_P_SIZE, ByteOrder.BIG_ENDIAN);
         }
@@ -607,7 +691,7 @@ public class SpaceMap extends JPanel {
         int[] transform = UtilG.planet2Ice(gui.getPallette());
         for (int i = 0; i < PLANET_PHASES; i++) {
             for (int j = 0; j < C.EFSPLAN_BIN_P_SIZE; j++) {
-                planet_images[C.EFSPLAN_BIN_LENGTH + i][j] = transform[planet_images[7 * PLANET_PHASES + i][j] & 0xff];
+                images[C.EFSPLAN_BIN_LENGTH + i][j] = transform[images[7 * PLANET_PHASES + i][j] & 0xff];
 
             }
         }
@@ -615,7 +699,7 @@ public class SpaceMap extends JPanel {
         transform = UtilG.planet2Jungle(gui.getPallette());
         for (int i = 0; i < PLANET_PHASES; i++) {
             for (int j = 0; j < C.EFSPLAN_BIN_P_SIZE; j++) {
-                planet_images[C.EFSPLAN_BIN_LENGTH + PLANET_PHASES + i][j] = transform[planet_images[7 * PLANET_PHASES + i][j] & 0xff];
+                images[C.EFSPLAN_BIN_LENGTH + PLANET_PHASES + i][j] = transform[images[7 * PLANET_PHASES + i][j] & 0xff];
             }
         }
 
@@ -623,7 +707,7 @@ public class SpaceMap extends JPanel {
         transform = UtilG.planet2Ocean(gui.getPallette());
         for (int i = 0; i < PLANET_PHASES; i++) {
             for (int j = 0; j < C.EFSPLAN_BIN_P_SIZE; j++) {
-                planet_images[C.EFSPLAN_BIN_LENGTH + 2 * PLANET_PHASES + i][j] = transform[planet_images[7 * PLANET_PHASES + i][j] & 0xff];
+                images[C.EFSPLAN_BIN_LENGTH + 2 * PLANET_PHASES + i][j] = transform[images[7 * PLANET_PHASES + i][j] & 0xff];
             }
         }
 
@@ -631,8 +715,9 @@ public class SpaceMap extends JPanel {
         transform = UtilG.planet2Desert(gui.getPallette());
         for (int i = 0; i < PLANET_PHASES; i++) {
             for (int j = 0; j < C.EFSPLAN_BIN_P_SIZE; j++) {
-                planet_images[C.EFSPLAN_BIN_LENGTH + 3 * PLANET_PHASES + i][j] = transform[planet_images[7 * PLANET_PHASES + i][j] & 0xff];
+                images[C.EFSPLAN_BIN_LENGTH + 3 * PLANET_PHASES + i][j] = transform[images[7 * PLANET_PHASES + i][j] & 0xff];
             }
         }
+        return images;
     }
 }
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package phoenix;
+
+import dat.EfsIni;
+import galaxyreader.GalaxyGenerator;
+import galaxyreader.Structure;
+import galaxyreader.Unit;
+import game.AutoSave;
+import game.CombatTrace;
+import game.Faction;
+import game.Game;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import util.C;
+import util.FN;
+import util.TurnProfiler;
+import util.Util;
+
+/**
+ * Headless entry point of Phoenix. Plays an AI only game without a GUI for a
+ * set number of years and writes the final game state record. No AWT toolkit
+ * is needed and nothing is rendered, so games run at full CPU speed, eg. on a
+ * server for balance testing.
+ * <p>
+ * All factions are set to computer control. Factions without an AI
+ * implementation only run their economy, research and build queues.
+ * <p>
+ * In batch mode (--games N) N independent games are run in parallel on a fixed
+ * thread pool, each with its own random seed split from the base seed, and one
+ * CSV row of outcome statistics per game is written to the result file.
+ *
+ * @author joulupunikki
+ */
+public class Headless {
+
+    private static final int DEFAULT_YEARS = 10;
+    private static final String DEFAULT_RESULT_FILE = FN.S_DIST_PREFIX + "phoenixbatch.csv";
+
+    /**
+     * Headless main.
+     * <p>
+     * parse commandline options <br>
+     * load galaxy and data files <br>
+     * play all faction turns for the requested number of years <br>
+     * write Game.record() output
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        // AI must always be on in a headless run
+        String[] ai_args = Arrays.copyOf(args, args.length + 1);
+        ai_args[args.length] = "--" + C.OPT_ENABLE_AI;
+        CommandLine cli_opts = parseCLI(ai_args);
+
+        String galaxy_file_name = cli_opts.getOptionValue(C.OPT_NAMED_GALAXY, FN.S_GALAXY_GAL);
+        if (!GalaxyGenerator.isSpec(galaxy_file_name)) {
+            Util.foundOrExit(galaxy_file_name);
+        }
+        int years = Integer.parseInt(cli_opts.getOptionValue(C.OPT_YEARS, "" + DEFAULT_YEARS));
+        long random_seed = Long.parseLong(cli_opts.getOptionValue(C.OPT_RANDOM_SEED, "" + System.nanoTime()));
+        String record_file = cli_opts.getOptionValue(C.OPT_RECORD_FILE, FN.S_GAME_STATE_RECORD_FILE);
+        // EFS.INI is read thru a shared temporary file, so read once for all games
+        Properties efs_ini = EfsIni.readEFSINI();
+        Properties phoenix_ini = EfsIni.readPhoenixIni();
+
+        long start = System.nanoTime();
+        if (cli_opts.hasOption(C.OPT_GAMES)) {
+            int games = Integer.parseInt(cli_opts.getOptionValue(C.OPT_GAMES));
+            int threads = Integer.parseInt(cli_opts.getOptionValue(C.OPT_THREADS,
+                    "" + Runtime.getRuntime().availableProcessors()));
+            String result_file = cli_opts.getOptionValue(C.OPT_RESULT_FILE, DEFAULT_RESULT_FILE);
+            runBatch(galaxy_file_name, random_seed, years, games, threads, result_file, efs_ini, phoenix_ini, cli_opts);
+            System.out.println("Batch of " + games + " games finished in "
+                    + ((System.nanoTime() - start) / 1_000_000 / 1e3) + "s");
+            return;
+        }
+        Game game = runGame(galaxy_file_name, random_seed, years, efs_ini, phoenix_ini, cli_opts);
+        System.out.println("Headless game finished at year " + game.getYear() + " in "
+                + ((System.nanoTime() - start) / 1_000_000 / 1e3) + "s");
+
+        try (PrintWriter pw = new PrintWriter(new BufferedWriter(new FileWriter(record_file, false)))) {
+            game.record(pw);
+        } catch (IOException ex) {
+            Util.logEx(null, ex, record_file);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Create a game from galaxy_file_name with all factions under computer
+     * control and play it for years years. Touches no global state so may be
+     * called concurrently.
+     *
+     * @param galaxy_file_name
+     * @param random_seed
+     * @param years
+     * @param efs_ini contents of EFS.INI
+     * @param phoenix_ini contents of PHOENIX.INI
+     * @param cli_opts command line options, C.OPT_ENABLE_AI must be set
+     * @return the game after the last played turn
+     */
+    public static Game runGame(String galaxy_file_name, long random_seed, int years,
+            Properties efs_ini, Properties phoenix_ini, CommandLine cli_opts) {
+        Game game = new Game(galaxy_file_name, 14, cli_opts);
+        CombatTrace trace = CombatTrace.NONE;
+        if (cli_opts.hasOption(C.OPT_COMBAT_TRACE)) {
+            String arg = cli_opts.getOptionValue(C.OPT_COMBAT_TRACE);
+            // as with autosaves, seed in name keeps parallel games apart
+            trace = CombatTrace.create(arg.equals(CombatTrace.LOG) ? arg : arg + "_" + Long.toHexString(random_seed));
+            game.getBattle().setTrace(trace);
+        }
+        TurnProfiler profiler = TurnProfiler.create(cli_opts.hasOption(C.OPT_PROFILE)
+                ? cli_opts.getOptionValue(C.OPT_PROFILE) + "_" + Long.toHexString(random_seed) : null);
+        game.setProfiler(profiler);
+        game.init(efs_ini, phoenix_ini);
+        game.getRandom().setSeed(random_seed);
+        game.setInitialSeed(random_seed);
+        for (int i = 0; i < C.NR_FACTIONS; i++) {
+            game.setFactionPlayer(i, false);
+        }
+        AutoSave auto_save = null;
+        if (cli_opts.hasOption(C.OPT_AUTOSAVE)) {
+            // seed in name keeps autosaves of parallel batch games apart
+            auto_save = new AutoSave(new File(FN.S_SAVE_PATH), FN.S_AUTOSAVE_NAME + "_" + Long.toHexString(random_seed),
+                    Integer.parseInt(cli_opts.getOptionValue(C.OPT_AUTOSAVE)));
+            game.setAutoSave(auto_save);
+        }
+        int end_year = game.getYear() + years;
+        game.beginGame();
+        while (game.getYear() < end_year) {
+            game.endTurn();
+        }
+        if (auto_save != null) {
+            auto_save.close();
+            if (years > 0 && !auto_save.getLatest().exists()) {
+                System.err.println("Autosave enabled but nothing was written to " + auto_save.getLatest());
+            }
+        }
+        trace.close();
+        profiler.close();
+        return game;
+    }
+
+    /**
+     * Run games independent games on a pool of threads threads and write
+     * one CSV row per game to result_file. Game i gets the i:th seed split
+     * from random_seed, so a batch is reproducible from its base seed.
+     */
+    private static void runBatch(String galaxy_file_name, long random_seed, int years, int games,
+            int threads, String result_file, Properties efs_ini, Properties phoenix_ini, CommandLine cli_opts) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        SplittableRandom seeds = new SplittableRandom(random_seed);
+        List<Future<GameResult>> results = new ArrayList<>(games);
+        for (int i = 0; i < games; i++) {
+            final int game_nr = i;
+            final long seed = seeds.nextLong();
+            results.add(pool.submit(() -> new GameResult(game_nr, seed,
+                    runGame(galaxy_file_name, seed, years, efs_ini, phoenix_ini, cli_opts))));
+        }
+        pool.shutdown();
+        try (CSVPrinter csv = new CSVPrinter(new BufferedWriter(new FileWriter(result_file, false)),
+                CSVFormat.DEFAULT.withHeader(GameResult.header()))) {
+            for (Future<GameResult> result : results) {
+                try {
+                    csv.printRecord(result.get().toRecord());
+                    csv.flush();
+                } catch (ExecutionException ex) {
+                    Util.logEx(null, ex.getCause(), "Batch game failed");
+                }
+            }
+        } catch (IOException ex) {
+            Util.logEx(null, ex, result_file);
+            System.exit(1);
+        } catch (InterruptedException ex) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Outcome statistics of one batch game. Holds only numbers so that the
+     * Game itself may be garbage collected as soon as it has finished.
+     */
+    private static class GameResult {
+
+        private final int game_nr;
+        private final long seed;
+        private final int year;
+        private final int winner;
+        private final int[] units = new int[C.NR_FACTIONS];
+        private final int[] cities = new int[C.NR_FACTIONS];
+
+        GameResult(int game_nr, long seed, Game game) {
+            this.game_nr = game_nr;
+            this.seed = seed;
+            this.year = game.getYear();
+            this.winner = Faction.checkVictoryByElimination(game.getFactions());
+            for (Unit unit : game.getUnits()) {
+                units[unit.owner]++;
+            }
+            for (Structure city : game.getStructures()) {
+                if (city.owner >= 0 && city.owner < C.NR_FACTIONS) {
+                    cities[city.owner]++;
+                }
+            }
+        }
+
+        static String[] header() {
+            List<String> header = new ArrayList<>();
+            header.addAll(Arrays.asList("game", "seed", "year", "winner", "units", "cities"));
+            for (int i = 0; i < C.NR_FACTIONS; i++) {
+                header.add("units " + Util.getFactionName(i));
+            }
+            for (int i = 0; i < C.NR_FACTIONS; i++) {
+                header.add("cities " + Util.getFactionName(i));
+            }
+            return header.toArray(new String[header.size()]);
+        }
+
+        List<Object> toRecord() {
+            List<Object> record = new ArrayList<>();
+            record.addAll(Arrays.asList(game_nr, seed, year, winner, Arrays.stream(units).sum(), Arrays.stream(cities).sum()));
+            for (int unit_count : units) {
+                record.add(unit_count);
+            }
+            for (int city_count : cities) {
+                record.add(city_count);
+            }
+            return record;
+        }
+    }
+
+    /**
+     * Parse headless command line options. Public so that the benchmarks in
+     * bench/ can set up games as headless runs do.
+     *
+     * @param args
+     * @return
+     */
+    public static CommandLine parseCLI(String[] args) {
+        CommandLine ret_val = null;
+        Options opts = new Options();
+        opts.addOption(C.OPT_NAMED_GALAXY, true, "Name of galaxy file, or generated galaxy spec eg. \"" + new GalaxyGenerator.Spec() + "\"");
+        opts.addOption(C.OPT_HELP, "Print help");
+        opts.addOption(null, C.OPT_YEARS, true, "Number of years to play (default " + DEFAULT_YEARS + ")");
+        opts.addOption(null, C.OPT_RANDOM_SEED, true, "Set argument as random seed");
+        opts.addOption(null, C.OPT_RECORD_FILE, true, "Write final game state record to this file");
+        opts.addOption(null, C.OPT_GAMES, true, "Batch mode, run this number of games in parallel");
+        opts.addOption(null, C.OPT_THREADS, true, "Batch mode thread count (default available cores)");
+        opts.addOption(null, C.OPT_RESULT_FILE, true, "Batch mode CSV result file");
+        opts.addOption(null, C.OPT_AUTOSAVE, true, "Autosave at end of turn once a year, keep this number of autosaves");
+        opts.addOption(null, C.OPT_COMBAT_TRACE, true, "Trace combat, \"log\" to log or name of binary trace file (seed is appended)");
+        opts.addOption(null, C.OPT_PROFILE, true, "Write per faction turn phase times and counts to this CSV file (seed is appended)");
+        opts.addOption(null, C.OPT_ECONOMY_PRINT, false, "Printout economy details at start of turn");
+        opts.addOption(null, C.OPT_ENABLE_AI, false, "Enable AI (always on)");
+        opts.addOption(null, C.OPT_AI_TEST, false, "Add Symbiot AI");
+
+        DefaultParser parser = new DefaultParser();
+        try {
+            ret_val = parser.parse(opts, args);
+        } catch (ParseException ex) {
+            System.out.println("Error parsing arguments: " + ex.getMessage());
+            System.exit(0);
+        }
+        if (ret_val.hasOption(C.OPT_HELP)) {
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("java -cp Phoenix.jar phoenix.Headless", opts);
+            System.exit(0);
+        }
+        return ret_val;
+    }
+}
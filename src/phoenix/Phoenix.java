@@ -399,6 +399,9 @@ public class Phoenix {
         opts.addOption(null, C.OPT_ENABLE_AI, false, "Enable AI");
         opts.addOption(null, C.OPT_AI_TEST, false, "Do AI test run");
         opts.addOption(null, C.OPT_CAPITALIZE_FILE_NAMES, false, "convert lower case to upper case in EFS file names");
+        opts.addOption(null, C.OPT_AUTOSAVE, true, "Autosave at end of turn once a year, keep this number of autosaves");
+        opts.addOption(null, C.OPT_COMBAT_TRACE, true, "Trace combat, \"log\" to log or name of binary trace file");
+        opts.addOption(null, C.OPT_PROFILE, true, "Write per faction turn phase times and counts to this CSV file");
 
         HelpFormatter formatter = new HelpFormatter();
         DefaultParser parser = new DefaultParser();
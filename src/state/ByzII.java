@@ -27,13 +27,10 @@
  */
 package state;
 
-import galaxyreader.Structure;
-import galaxyreader.Unit;
 import game.Message;
 import game.Regency;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
-import java.util.List;
 import util.C;
 import util.Util;
 
@@ -162,25 +159,7 @@ public class ByzII extends State {
 
 
     public static void setAssets(int ministry, int faction) {
-        List<Unit> u = game.getUnits();
-        List<Structure> s = game.getStructures();
-        Point p = new Point(faction, ministry);
-        if (faction == -1) {
-            p.x = ministry;
-        }
-        
-        for (Unit u1 : u) {
-            if (u1.prev_owner == ministry) {
-                game.changeOwnerOfUnit(p, u1);
-            }
-        }
-        for (Structure s1 : s) {
-            if (s1.prev_owner == ministry) {
-                game.getEconomy().updateProdConsForCity(s1, false);
-                s1.owner = p.x;
-                game.getEconomy().updateProdConsForCity(s1, true);
-            }
-        }
+        Regency.setAssets(ministry, faction, game);
     }
     
     static protected int getPosition(Point p) {
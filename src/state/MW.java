@@ -94,7 +94,7 @@ public class MW extends State {
             gui.saveGame();
             return;
         }
-        game.endTurn();
+        gui.endTurn();
         game.setPath(null);
         game.setJumpPath(null);
         SU.selectNextUnmovedUnit();
@@ -104,8 +104,9 @@ public class PW extends MW {
     public void buildRoad() {
         Point p = game.getSelectedPoint();
         Hex h = game.getHexFromPXY(game.getCurrentPlanetNr(), p.x, p.y);
-        h.getTerrain()[C.ROAD] = true;
+        game.getPlanetGrid(game.getCurrentPlanetNr()).setTerrain(h, C.ROAD, true);
         gui.enableBuildRoadMenuItem(false);
+        gui.getMainWindows().repaint();
     }
 
 }
@@ -96,6 +96,7 @@ public class PW2 extends PW {
             return;
         }
         if (SU.disembarkNavalCargo(p) || SU.embarkNavalCargo(p)) {
+            gui.getMainWindows().repaint();
             return;
         }
         SU.findPath(p);
@@ -90,6 +90,7 @@ public class PW3 extends PW {
 
     public void clickOnPlanetMapButton1(Point p) {
         if (SU.disembarkNavalCargo(p) || SU.embarkNavalCargo(p)) {
+            gui.getMainWindows().repaint();
             return;
         }
         LinkedList<Hex> path = game.getPath();
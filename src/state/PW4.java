@@ -139,7 +139,7 @@ public class PW4 extends PW {
         }
         // only minimal repaint needs to be done when animating stack movement
         if (0 < gui.getStack_move_counter() && gui.getStack_move_counter() < 20) {
-            gui.getPlanetMap().repaint();
+            gui.getPlanetMap().repaintMove();
         } else {
             gui.getPlanetWindow().repaint();
         }
@@ -66,7 +66,7 @@ public class SU extends State {
         gui.enableRazeCityMenuItem(false);
         Unit u = game.getSelectedStack().get(0);
         game.destroyCity(u.p_idx, u.x, u.y);
-        
+        gui.getMainWindows().repaint();
     }
 //    public static void click
 
@@ -826,6 +826,7 @@ public class SU extends State {
         } else if (e.getButton() == MouseEvent.BUTTON2) {
             gui.showStackMenu(e);
         }
+        gui.getMainWindows().repaint();
     }
 
     public static void selectUnit(Unit unit, boolean select) {
@@ -1481,24 +1482,14 @@ public class SU extends State {
      * @return the boolean
      */
     public static boolean byzIICombatOK(List<Unit> stack, boolean show_msg) {
-        if (game.getRegency().getYearsSinceThroneClaim() < 0 && stack.get(0).p_idx == C.BYZ_II_P_IDX) {
-            for (Unit u : stack) {
-                switch (u.type) {
-                    case C.STEALTH_SHIP_UNIT_TYPE:
-                    case C.SUBMARINE_UNIT_TYPE:
-                    case C.SPY_UNIT_TYPE:
-                        // OK to attack
-                        break;
-                    default:
-                        if (show_msg) {
-                            gui.showInfoWindow("Combat is restriced on Byzantium II "
-                                    + "until someone has made a claim to the emperor's "
-                                    + "crown.  Until that time, only spies, submarines, "
-                                    + "and stealth ships are permitted to engage in combat.");
-                        }
-                        return false;
-                }
+        if (!game.getRegency().isByzIICombatOK(stack)) {
+            if (show_msg) {
+                gui.showInfoWindow("Combat is restriced on Byzantium II "
+                        + "until someone has made a claim to the emperor's "
+                        + "crown.  Until that time, only spies, submarines, "
+                        + "and stealth ships are permitted to engage in combat.");
             }
+            return false;
         }
         return true;
     }
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Disk cache of decoded, ready to blit pixel arrays. Decoding the EFS .BIN,
+ * .PCX and .FLC files, applying palette transforms and 2x scaling is done
+ * once, after that the results are read back from a single file. The file
+ * is read into the heap rather than memory mapped, so that flush() can
+ * replace it also on platforms which do not allow replacing a mapped file.
+ * Each entry is keyed by a string naming source, transform and
+ * resolution, and is validated against the length and modification time of
+ * its source files and against a CRC32 of its payload. A stale or damaged
+ * entry is rebuilt with its loader, new entries are written out by flush().
+ * <p>
+ * File layout, all big endian: magic, version, entry count, index entries
+ * (key, source stamps, array lengths, crc, payload offset), payloads as ints.
+ *
+ * @author joulupunikki
+ */
+public class AssetCache {
+
+    private static final Logger logger = LogManager.getLogger(AssetCache.class);
+    private static final int MAGIC = 0x50484e58; // "PHNX"
+    // bump when any decoder or transform output changes
+    private static final int VERSION = 1;
+    private static AssetCache cache;
+    private static boolean hook_added = false;
+
+    private final Path path;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private ByteBuffer map;
+    private boolean dirty = false;
+
+    /**
+     * Produces the decoded arrays of a cache entry.
+     */
+    public interface Loader {
+
+        int[][] load();
+    }
+
+    private static class Entry {
+
+        long[] stamps;
+        int[] lengths;
+        long crc;
+        long offset;
+        // set for entries built or written during this run, null for entries
+        // in map
+        int[][] data;
+    }
+
+    private AssetCache(Path path) {
+        this.path = path;
+        open();
+    }
+
+    /**
+     * Get cached arrays for key, or build them with loader if the cache has
+     * no valid entry. A loader returning null is not cached.
+     *
+     * @param key names source, transform and resolution
+     * @param sources files the arrays are decoded from
+     * @param loader
+     * @return
+     */
+    public static synchronized int[][] get(String key, String[] sources, Loader loader) {
+        if (cache == null) {
+            cache = new AssetCache(Paths.get(FN.S_ASSET_CACHE));
+        }
+        return cache.getEntry(key, sources, loader);
+    }
+
+    /**
+     * Single array version of get().
+     *
+     * @param key
+     * @param sources
+     * @param loader
+     * @return
+     */
+    public static int[] getArray(String key, String[] sources, Loader loader) {
+        int[][] ret = get(key, sources, loader);
+        return ret == null ? null : ret[0];
+    }
+
+    /**
+     * Write the cache file if entries were added or rebuilt. The first call
+     * also registers a shutdown hook so that images first decoded later in
+     * the game are saved too.
+     */
+    public static synchronized void flush() {
+        if (!hook_added) {
+            hook_added = true;
+            Runtime.getRuntime().addShutdownHook(new Thread(AssetCache::flush));
+        }
+        if (cache != null && cache.dirty) {
+            cache.write();
+        }
+    }
+
+    private int[][] getEntry(String key, String[] sources, Loader loader) {
+        long[] stamps = stamp(sources);
+        Entry e = entries.get(key);
+        if (e != null && Arrays.equals(e.stamps, stamps)) {
+            int[][] ret = e.data == null ? read(e) : copy(e.data);
+            if (ret != null) {
+                return ret;
+            }
+            logger.warn("Asset cache entry " + key + " damaged, rebuilding");
+        }
+        int[][] ret = loader.load();
+        if (ret == null) {
+            return null;
+        }
+        e = new Entry();
+        e.stamps = stamps;
+        e.lengths = new int[ret.length];
+        for (int i = 0; i < ret.length; i++) {
+            e.lengths[i] = ret[i].length;
+        }
+        e.data = copy(ret);
+        entries.put(key, e);
+        dirty = true;
+        return ret;
+    }
+
+    private static long[] stamp(String[] sources) {
+        long[] stamps = new long[2 * sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            File f = new File(sources[i]);
+            stamps[2 * i] = f.length();
+            stamps[2 * i + 1] = f.lastModified();
+        }
+        return stamps;
+    }
+
+    private static int[][] copy(int[][] data) {
+        int[][] ret = new int[data.length][];
+        for (int i = 0; i < data.length; i++) {
+            ret[i] = data[i].clone();
+        }
+        return ret;
+    }
+
+    /**
+     * Read payload of e from map, null if the index entry points outside the
+     * file or the CRC does not match.
+     */
+    private int[][] read(Entry e) {
+        if (e.offset < 0 || e.offset > map.limit()) {
+            return null;
+        }
+        long total = 0;
+        for (int len : e.lengths) {
+            if (len < 0) {
+                return null;
+            }
+            total += 4L * len;
+        }
+        if (total > map.limit() - e.offset) {
+            return null;
+        }
+        int[][] ret = new int[e.lengths.length][];
+        ByteBuffer bb = map.duplicate();
+        bb.position((int) e.offset);
+        CRC32 crc = new CRC32();
+        ByteBuffer tmp = bb.slice();
+        tmp.limit((int) total);
+        crc.update(tmp);
+        if (crc.getValue() != e.crc) {
+            return null;
+        }
+        IntBuffer ib = bb.slice().asIntBuffer();
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = new int[e.lengths[i]];
+            ib.get(ret[i]);
+        }
+        return ret;
+    }
+
+    private void open() {
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+        try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) fc.size());
+            while (buf.hasRemaining() && fc.read(buf) >= 0) {
+            }
+            buf.flip();
+            buf.order(ByteOrder.BIG_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                logger.info("Asset cache " + path + " is of old version, rebuilding");
+                return;
+            }
+            int count = count(buf, 1);
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[buf.getShort() & 0xffff];
+                buf.get(key);
+                Entry e = new Entry();
+                e.stamps = new long[count(buf, 8)];
+                for (int j = 0; j < e.stamps.length; j++) {
+                    e.stamps[j] = buf.getLong();
+                }
+                e.lengths = new int[count(buf, 4)];
+                for (int j = 0; j < e.lengths.length; j++) {
+                    e.lengths[j] = buf.getInt();
+                }
+                e.crc = buf.getLong();
+                e.offset = buf.getLong();
+                entries.put(new String(key, StandardCharsets.UTF_8), e);
+            }
+            map = buf;
+        } catch (IOException | RuntimeException ex) {
+            logger.warn("Asset cache " + path + " unreadable, rebuilding: " + ex);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Read an element count of an index array, checking that the elements
+     * fit in what is left of the file so that a damaged index cannot make
+     * open() allocate arbitrarily large arrays.
+     */
+    private static int count(ByteBuffer buf, int element_size) throws IOException {
+        int count = buf.getInt();
+        if (count < 0 || (long) count * element_size > buf.remaining()) {
+            throw new IOException("damaged index");
+        }
+        return count;
+    }
+
+    private void write() {
+        // payload offsets change in the new file, so pull every entry into
+        // memory and serve them from there after the write
+        for (String key : new ArrayList<>(entries.keySet())) {
+            Entry e = entries.get(key);
+            if (e.data == null) {
+                e.data = read(e);
+                if (e.data == null) {
+                    entries.remove(key);
+                }
+            }
+        }
+        map = null;
+        Path tmp = Paths.get(path.toString() + ".tmp");
+        try {
+            ByteArrayOutputStream index_bytes = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(index_bytes);
+            int index_size = 12;
+            for (String key : entries.keySet()) {
+                Entry e = entries.get(key);
+                index_size += 2 + key.getBytes(StandardCharsets.UTF_8).length
+                        + 4 + 8 * e.stamps.length + 4 + 4 * e.lengths.length + 16;
+            }
+            long offset = index_size;
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            index.writeInt(MAGIC);
+            index.writeInt(VERSION);
+            index.writeInt(entries.size());
+            for (String key : entries.keySet()) {
+                Entry e = entries.get(key);
+                ByteArrayOutputStream entry_bytes = new ByteArrayOutputStream();
+                DataOutputStream entry = new DataOutputStream(entry_bytes);
+                for (int[] a : e.data) {
+                    for (int v : a) {
+                        entry.writeInt(v);
+                    }
+                }
+                byte[] data = entry_bytes.toByteArray();
+                CRC32 crc = new CRC32();
+                crc.update(data);
+                e.crc = crc.getValue();
+                e.offset = offset + payload.size();
+                payload.write(data);
+                byte[] k = key.getBytes(StandardCharsets.UTF_8);
+                index.writeShort(k.length);
+                index.write(k);
+                index.writeInt(e.stamps.length);
+                for (long s : e.stamps) {
+                    index.writeLong(s);
+                }
+                index.writeInt(e.lengths.length);
+                for (int len : e.lengths) {
+                    index.writeInt(len);
+                }
+                index.writeLong(e.crc);
+                index.writeLong(e.offset);
+            }
+            try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                fc.write(ByteBuffer.wrap(index_bytes.toByteArray()));
+                fc.write(ByteBuffer.wrap(payload.toByteArray()));
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+            logger.debug("Asset cache " + path + " written, " + entries.size() + " entries");
+        } catch (IOException ex) {
+            // a read only install just runs without the cache
+            logger.warn("Failed to write asset cache " + path + ": " + ex);
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ex2) {
+            }
+        }
+    }
+}
@@ -121,6 +121,8 @@ public class C {
     // HexProc procedures
     public static final int INIT_SPOT = 0;
     public static final int SPOT = 1;
+    public static final int SPOT_HEX = 2;
+    public static final int SPOT_AREA = 3;
 //    public static final int WATER_ATTK = 4;
 //    public static final int INDIRECT_ATTK = 2;
 //    public static final int AIR_ATTK = 2;
@@ -427,6 +429,15 @@ public class C {
     public static final String OPT_WIZARD_MODE = "wizardmode";
     public static final String OPT_RANDOM_SEED = "randomseed";
     public static final String OPT_CAPITALIZE_FILE_NAMES = "capitalizefilenames";
+    public static final String OPT_AUTOSAVE = "autosave";
+    public static final String OPT_COMBAT_TRACE = "combattrace";
+    public static final String OPT_PROFILE = "profile";
+    // options of headless simulation runs
+    public static final String OPT_YEARS = "years";
+    public static final String OPT_RECORD_FILE = "recordfile";
+    public static final String OPT_GAMES = "games";
+    public static final String OPT_THREADS = "threads";
+    public static final String OPT_RESULT_FILE = "resultfile";
 
     // stack menu choices
     public static final String S_ALL = "all";
@@ -36,6 +36,8 @@ import java.util.Comparator;
 /**
  * Various Comparator implementations, for sorting Structures, Units etc. Call
  * like structures.sort(Comp.city_pidx) to sort structures in planetary order.
+ * Comparators which need map data are created per Game, eg.
+ * units.sort(new Comp.UnitCIdx(game)).
  *
  * @author joulupunikki
  */
@@ -45,11 +47,9 @@ public class Comp {
     public static CityType city_type = new CityType();
     public static CityName city_name = new CityName();
     public static CityXY city_xy = new CityXY();
-    public static CityCIdx city_cidx = new CityCIdx();
     public static CityPIdx city_pidx = new CityPIdx();
 
     public static UnitXY unit_xy = new UnitXY();
-    public static UnitCIdx unit_cidx = new UnitCIdx();
     public static UnitPIdx unit_pidx = new UnitPIdx();
     public static UnitInSpace unit_in_space = new UnitInSpace();
     public static UnitResRelic unit_res_relic = new UnitResRelic();
@@ -117,11 +117,16 @@ public class Comp {
      */
     public static class CityCIdx implements Comparator<Structure> {
 
+        private final Game game;
         private int prev_o1_pidx = -1;
         private int prev_o2_pidx = -1;
         private Hex[][] o1_map;
         private Hex[][] o2_map;
 
+        public CityCIdx(Game game) {
+            this.game = game;
+        }
+
         public int compare(Structure o1, Structure o2) {
             if (o1.p_idx != prev_o1_pidx) {
                 prev_o1_pidx = o1.p_idx;
@@ -168,11 +173,15 @@ public class Comp {
      */
     public static class UnitCIdx implements Comparator<Unit> {
 
+        private final Game game;
         private int prev_o1_pidx = -1;
         private int prev_o2_pidx = -1;
         private Hex[][] o1_map;
         private Hex[][] o2_map;
 
+        public UnitCIdx(Game game) {
+            this.game = game;
+        }
 
         @Override
         public int compare(Unit o1, Unit o2) {
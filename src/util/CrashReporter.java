@@ -30,6 +30,7 @@ package util;
 import gui.Gui;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.awt.event.AWTEventListener;
 import javax.swing.BorderFactory;
@@ -40,7 +41,8 @@ import phoenix.Phoenix;
 
 /**
  * When a System.exit(x) with x != 0 condition would occur this JFrame will be
- * shown before exit.
+ * shown before exit. When running headless the stack trace is printed and the
+ * JVM exits immediately.
  *
  * @author joulupunikki joulupunikki@gmail.communist.invalid
  */
@@ -51,6 +53,10 @@ public class CrashReporter {
     private static final JTextArea text_area = new JTextArea();
     private static JFrame frame = null;
     public static void showCrashReport(Throwable e) {
+        if (GraphicsEnvironment.isHeadless()) { // no frame to show, eg. headless simulation runs
+            e.printStackTrace();
+            System.exit(1);
+        }
         removeEventListeners();
         addToReport(e, text_area);
         if (!frame_up) {
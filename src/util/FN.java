@@ -48,6 +48,7 @@ public class FN {
     public static final String S_SAVE_PATH;
     public static final String S_SAV = "SAV";
     public static final String S_DEFAULT_SAVE_NAME = "PBEM_DEFAULT_SAVE";
+    public static final String S_AUTOSAVE_NAME = "AUTOSAVE";
     static {
         File file_win = new File(".." + F_S + "Phoenix.exe");
         File file_lin = new File(".." + F_S + "app" + F_S + "Phoenix.jar");
@@ -72,6 +73,7 @@ public class FN {
     public static final String S_PHOENIXTEST_INI = S_PHOENIX + F_S + "PHOENIXTEST.INI";
     public static final String S_RUINGUARD_CSV = S_PHOENIX + F_S + "RUIN_GUARD.CSV";
     public static final String S_ALIENRUINGUARD_CSV = S_PHOENIX + F_S + "ALIEN_RUIN_GUARD.CSV";
+    public static final String S_ASSET_CACHE = S_DIST_PREFIX + S_PHOENIX + F_S + "ASSETS.CACHE";
 
     public static final String S_BLANK_FLC = S_DIST_PREFIX + "BLANK.FLC";
     
@@ -130,8 +132,6 @@ public class FN {
     // filenames of buttons 1-16 in array slots 1-16 (slot 0 is unused)
     public static final int EFSBUT_NR = 16;
     public static final String[] S_EFSBUT_BIN;
-    public static final String STATIC_AI_SAVE_BIN = S_DIST_PREFIX + S_PHOENIX + F_S + "static_ai_save.bin";
-    //public static final String STATIC_AI_SAVE_BIN = S_PHOENIX + F_S + "static_ai_save.bin";
     static {
         S_EFSBUT_BIN = initEfsBut();
     }
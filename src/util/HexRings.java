@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package util;
+
+import game.Hex;
+import game.PlanetGrid;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Precomputed hex rings of the planet map. All planet maps have the same
+ * topology, so for every hex index the indexes of all hexes within MAX_RADIUS
+ * are stored once, ordered by distance, in a flat int[] per hex index, with
+ * the start of each distance ring in a separate offset table. Radius queries
+ * then walk a slice of an array instead of searching the hex graph and
+ * allocate nothing.
+ * <p>
+ * Like Util.getHexesWithinRadiusOf() the rings follow the hex graph, so they
+ * wrap around in x and are cut off at the top and bottom of the map.
+ *
+ * @author joulupunikki
+ */
+public class HexRings {
+
+    /**
+     * Largest radius with precomputed rings. Larger radii fall back to a graph
+     * search.
+     */
+    public static final int MAX_RADIUS = 10;
+    private static final int SIZE = C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS;
+    // hex index -> indexes of hexes within MAX_RADIUS, ordered by distance
+    private static final int[][] rings = new int[SIZE][];
+    // [hex index * (MAX_RADIUS + 2) + d] -> offset in rings[hex index] of the
+    // first hex at distance d, [... + MAX_RADIUS + 1] is the ring length
+    private static final int[] ring_start = new int[SIZE * (MAX_RADIUS + 2)];
+
+    static {
+        Hex[][] map = new PlanetGrid().getMapArray();
+        int[] dist = new int[SIZE];
+        int[] queue = new int[SIZE];
+        for (int center = 0; center < SIZE; center++) {
+            Arrays.fill(dist, -1);
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = center;
+            dist[center] = 0;
+            while (head < tail) {
+                int idx = queue[head++];
+                if (dist[idx] == MAX_RADIUS) {
+                    continue;
+                }
+                for (Hex n : map[idx % C.PLANET_MAP_WIDTH][idx / C.PLANET_MAP_WIDTH].getNeighbours()) {
+                    if (n != null && dist[n.getHexIdx()] < 0) {
+                        dist[n.getHexIdx()] = dist[idx] + 1;
+                        queue[tail++] = n.getHexIdx();
+                    }
+                }
+            }
+            // breadth first order is distance order
+            rings[center] = Arrays.copyOf(queue, tail);
+            int base = center * (MAX_RADIUS + 2);
+            int d = 0;
+            for (int i = 0; i < tail; i++) {
+                while (d <= dist[queue[i]]) {
+                    ring_start[base + d++] = i;
+                }
+            }
+            while (d <= MAX_RADIUS + 1) {
+                ring_start[base + d++] = tail;
+            }
+        }
+    }
+
+    /**
+     * Callback of forEachWithin(). Implement on a long lived object rather than
+     * with a capturing lambda on hot paths to keep them allocation-free.
+     */
+    public interface Visitor {
+
+        /**
+         * @param hex visited hex
+         * @param dist distance of hex from the center hex
+         */
+        void visit(Hex hex, int dist);
+    }
+
+    private HexRings() {
+    }
+
+    /**
+     * Visit each hex within radius of hex, in order of increasing distance,
+     * starting with hex itself at distance 0.
+     *
+     * @param map planet map array, see PlanetGrid.getMapArray()
+     * @param hex center hex
+     * @param radius
+     * @param visitor
+     */
+    public static void forEachWithin(Hex[][] map, Hex hex, int radius, Visitor visitor) {
+        if (radius > MAX_RADIUS) {
+            List<Integer> distances = new LinkedList<>();
+            Set<Hex> hexes = Util.getHexesWithinRadiusOf(hex, radius, distances);
+            Iterator<Integer> dist_iter = distances.iterator();
+            for (Hex hex2 : hexes) {
+                visitor.visit(hex2, dist_iter.next());
+            }
+            return;
+        }
+        int center = hex.getHexIdx();
+        int[] ring = rings[center];
+        int base = center * (MAX_RADIUS + 2);
+        for (int d = 0; d <= radius; d++) {
+            for (int i = ring_start[base + d], end = ring_start[base + d + 1]; i < end; i++) {
+                int idx = ring[i];
+                visitor.visit(map[idx % C.PLANET_MAP_WIDTH][idx / C.PLANET_MAP_WIDTH], d);
+            }
+        }
+    }
+
+    /**
+     * Return the hex indexes within MAX_RADIUS of hex_idx ordered by distance.
+     * The first count(hex_idx, r) of them are those within radius r. The
+     * returned array is shared and must not be modified.
+     *
+     * @param hex_idx
+     * @return
+     */
+    public static int[] within(int hex_idx) {
+        return rings[hex_idx];
+    }
+
+    /**
+     * Return the number of hexes within radius of hex_idx.
+     *
+     * @param hex_idx
+     * @param radius at most MAX_RADIUS
+     * @return
+     */
+    public static int count(int hex_idx, int radius) {
+        return ring_start[hex_idx * (MAX_RADIUS + 2) + radius + 1];
+    }
+
+    /**
+     * Return true iff hex is within radius of center.
+     *
+     * @param center
+     * @param hex
+     * @param radius
+     * @return
+     */
+    public static boolean isWithin(Hex center, Hex hex, int radius) {
+        if (radius > MAX_RADIUS) {
+            return Util.getHexesWithinRadiusOf(center, radius, null).contains(hex);
+        }
+        int center_idx = center.getHexIdx();
+        int hex_idx = hex.getHexIdx();
+        int[] ring = rings[center_idx];
+        for (int i = 0, end = count(center_idx, radius); i < end; i++) {
+            if (ring[i] == hex_idx) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
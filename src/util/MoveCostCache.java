@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package util;
+
+import galaxyreader.Structure;
+import galaxyreader.Unit;
+import game.Hex;
+import java.util.List;
+
+/**
+ * Move cost cache of one planet. The terrain part of the move costs, which
+ * depends only on the terrain of a hex, the tile set and the move type, is
+ * computed once into a [move type][hex index] table. On each
+ * PathFind.setMoveCosts call only hexes with a city or units on them get a
+ * dynamic overlay (enemy cities and stacks, stack size limit), and overlaid
+ * hexes of the previous call are restored from the table, so the per call
+ * cost is proportional to the number of occupied hexes.
+ * <p>
+ * Terrain changes during play go thru PlanetGrid.setTerrain(), which updates
+ * the costs of the changed hex. Writes to Hex move costs from outside the
+ * cache must be followed by PlanetGrid.resetMoveCostCache().
+ *
+ * @author joulupunikki
+ */
+public class MoveCostCache {
+
+    private static final int SIZE = C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS;
+    private static final int TERRAIN = -1;
+    private final double[][][] terr_cost;
+    private final int tile_set;
+    // terrain move costs [move type][hex index]
+    private final int[][] terrain_costs;
+    // hexes whose Hex move costs differ from terrain_costs
+    private final int[] overlaid = new int[SIZE];
+    private final boolean[] is_overlaid = new boolean[SIZE];
+    private int overlaid_count;
+    private boolean applied = false;
+
+    public MoveCostCache(Hex[][] map, double[][][] terr_cost, int tile_set) {
+        this.terr_cost = terr_cost;
+        this.tile_set = tile_set;
+        terrain_costs = new int[C.MoveType.values().length][SIZE];
+        for (Hex[] column : map) {
+            for (Hex hex : column) {
+                setTerrainCosts(hex);
+            }
+        }
+    }
+
+    private void setTerrainCosts(Hex hex) {
+        boolean[] terr_types = hex.getTerrain();
+        for (int l = 0; l < terrain_costs.length; l++) {
+            double move_cost = 1;
+            for (int k = 0; k < terr_types.length; k++) {
+                if (terr_types[k]) {
+                    move_cost *= terr_cost[k][tile_set][l];
+                }
+            }
+            int result = 0;
+            if (move_cost != 0) {
+                result = (int) Math.ceil(move_cost);
+                if (result == 0) {
+                    result = 1;
+                }
+            }
+            terrain_costs[l][hex.getHexIdx()] = result;
+        }
+    }
+
+    /**
+     * Recompute the terrain costs of hex after its terrain has changed. The
+     * Hex move costs of hex are restored from the new costs on the next
+     * apply().
+     *
+     * @param hex
+     */
+    public void terrainChanged(Hex hex) {
+        setTerrainCosts(hex);
+        int idx = hex.getHexIdx();
+        if (applied && !is_overlaid[idx]) {
+            is_overlaid[idx] = true;
+            overlaid[overlaid_count++] = idx;
+        }
+    }
+
+    /**
+     * Is this cache valid for terr_cost and tile_set.
+     */
+    public boolean isFor(double[][][] terr_cost, int tile_set) {
+        return this.terr_cost == terr_cost && this.tile_set == tile_set;
+    }
+
+    /**
+     * Set Hex move costs of map for a stack of stack_size units of owner
+     * moving to destination. Same rules as the full PathFind.setMoveCosts
+     * calculation.
+     */
+    public void apply(Hex[][] map, int stack_size, int owner, int prev_owner, Hex destination) {
+        if (!applied) {
+            for (Hex[] column : map) {
+                for (Hex hex : column) {
+                    setCosts(hex, TERRAIN);
+                }
+            }
+            applied = true;
+        } else {
+            for (int i = 0; i < overlaid_count; i++) {
+                int idx = overlaid[i];
+                is_overlaid[idx] = false;
+                setCosts(map[idx % C.PLANET_MAP_WIDTH][idx / C.PLANET_MAP_WIDTH], TERRAIN);
+            }
+        }
+        overlaid_count = 0;
+        for (Hex[] column : map) {
+            for (Hex hex : column) {
+                Structure struct = hex.getStructure();
+                List<Unit> stack = hex.getStack();
+                if (struct == null && stack.isEmpty()) {
+                    continue;
+                }
+                int cost = TERRAIN;
+                //if own city (and not loaned) move_cost == 1 if enemy city move_cost = 0
+                //except when destination hex
+                if (struct != null) {
+                    if (struct.prev_owner == prev_owner || ((struct.owner != owner) && hex.equals(destination))) {
+                        cost = 1;
+                    } else {
+                        cost = 0;
+                    }
+                }
+                //if enemy units (except when destination hex) or would be
+                // more than 20 own units move_cost = 0
+                int size = Util.stackSize(stack);
+                if (size > 0) {
+                    if (stack.get(0).prev_owner != prev_owner) {
+                        if (stack.get(0).owner == owner || !hex.equals(destination)) {
+                            cost = 0;
+                        }
+                    } else if (size + stack_size > C.STACK_SIZE) {
+                        if (!hex.equals(destination)) {
+                            cost = 0;
+                        }
+                    }
+                }
+                if (cost != TERRAIN) {
+                    setCosts(hex, cost);
+                    is_overlaid[hex.getHexIdx()] = true;
+                    overlaid[overlaid_count++] = hex.getHexIdx();
+                }
+            }
+        }
+    }
+
+    private void setCosts(Hex hex, int cost) {
+        int idx = hex.getHexIdx();
+        for (int l = 0; l < terrain_costs.length; l++) {
+            hex.setMoveCost(cost == TERRAIN ? terrain_costs[l][idx] : cost, l);
+        }
+    }
+}
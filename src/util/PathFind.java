@@ -33,10 +33,11 @@ import galaxyreader.Unit;
 import game.Game;
 import game.Hex;
 import game.PlanetGrid;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.PriorityQueue;
 
 /**
  * Class to handle unit path and movement cost calculations. Has to take into
@@ -49,73 +50,281 @@ import java.util.PriorityQueue;
  */
 public class PathFind {
 
+    private static final ThreadLocal<HexSearch> hex_search = ThreadLocal.withInitial(HexSearch::new);
+
     /**
-     * Dijkstra's shortest path algorithm on PlanetGrid.
+     * A* shortest path algorithm on PlanetGrid. The heuristic is the hex
+     * distance to destination, wrapping around the map in the x direction.
+     * Since entering a hex costs at least one move point the heuristic never
+     * overestimates and the returned path is a shortest one. Search state is
+     * kept in per thread arrays indexed by Hex.getHexIdx(), Hex
+     * min_dist/visited/previous are not touched.
      *
      * @param graph
      * @param source
      * @param destination
+     * @param move_type
      * @return Path ordered List of Hexes or null if path not found;
      */
     public static LinkedList<Hex> shortestPath(PlanetGrid graph, Hex source, Hex destination, int move_type) {
+        TurnProfiler.count(TurnProfiler.Count.PATH_SEARCHES);
+        return hex_search.get().search(graph.getMapArray(), source, destination, move_type);
+    }
 
-        long time = System.currentTimeMillis();
-        int capacity = 0;
-        Hex[][] hex_array = graph.getMapArray();
-        for (int i = 0; i < hex_array.length; i++) {
-            for (int j = 0; j < hex_array[i].length; j++) {
-                hex_array[i][j].setMinDist(Integer.MAX_VALUE);
-                hex_array[i][j].setVisited(false);
-                hex_array[i][j].setPrevious(null);
-                ++capacity;
-            }
+    /**
+     * Multi source, multi target Dijkstra search on PlanetGrid, finds the
+     * source/target pair with the lowest move cost in one sweep from all
+     * sources. Move costs must have been set with setMoveCosts. Target hexes
+     * are not passed thru, and since enemy cities and units make a hex
+     * impassable for normal movement, entering a target hex with zero move
+     * cost is counted as one move point.
+     *
+     * @param graph
+     * @param sources
+     * @param targets
+     * @param move_type
+     * @return the nearest pair, or null if no target is reachable
+     */
+    public static Nearest nearestTarget(PlanetGrid graph, List<Hex> sources, Collection<Hex> targets, int move_type) {
+        TurnProfiler.count(TurnProfiler.Count.PATH_SEARCHES);
+        return hex_search.get().nearest(graph.getMapArray(), sources, targets, move_type);
+    }
+
+    /**
+     * Result of nearestTarget, index of the source in the sources list, the
+     * target hex and the move cost between them.
+     */
+    public static class Nearest {
 
+        public final int source;
+        public final Hex target;
+        public final int dist;
+
+        Nearest(int source, Hex target, int dist) {
+            this.source = source;
+            this.target = target;
+            this.dist = dist;
         }
-        source.setMinDist(0);
-        PriorityQueue<Hex> queue = new PriorityQueue<>(capacity);
-        for (int i = 0; i < hex_array.length; i++) {
-            for (int j = 0; j < hex_array[i].length; j++) {
-                queue.add(hex_array[i][j]);
+    }
+
+    /**
+     * Returns the number of hex steps between (x1, y1) and (x2, y2) on a
+     * planet map, ignoring terrain. The map wraps around in the x direction.
+     *
+     * @param x1
+     * @param y1
+     * @param x2
+     * @param y2
+     * @return hex distance
+     */
+    public static int hexDistance(int x1, int y1, int x2, int y2) {
+        int wrapped_x2 = x2 < x1 ? x2 + C.PLANET_MAP_WIDTH : x2 - C.PLANET_MAP_WIDTH;
+        return Math.min(axialDistance(x1, y1, x2, y2), axialDistance(x1, y1, wrapped_x2, y2));
+    }
+
+    /**
+     * Hex distance without wrapping. Map columns are in "even-q" offset
+     * layout, ie. even columns are shifted half a hex down, they are converted
+     * to axial coordinates for the distance calculation. C.PLANET_MAP_WIDTH is
+     * even so column parity is preserved by wrapping.
+     */
+    private static int axialDistance(int x1, int y1, int x2, int y2) {
+        int dq = x2 - x1;
+        int dr = (y2 - ((x2 + (x2 & 1)) >> 1)) - (y1 - ((x1 + (x1 & 1)) >> 1));
+        return Math.max(Math.abs(dq), Math.max(Math.abs(dr), Math.abs(dq + dr)));
+    }
+
+    /**
+     * Search state for one thread. Per hex arrays are indexed by
+     * Hex.getHexIdx(), entries are valid only when their generation stamp
+     * equals the current search generation, so no per search reset of the
+     * map is needed. Open hexes are kept in a binary min heap on f = g + h
+     * with heap_pos[] mapping a hex to its heap slot for decrease-key.
+     */
+    private static final class HexSearch {
+
+        private static final int SIZE = C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS;
+        private final int[] g_score = new int[SIZE];
+        private final int[] f_score = new int[SIZE];
+        private final int[] previous = new int[SIZE];
+        private final int[] origin = new int[SIZE]; // source list index, for nearest()
+        private final int[] target = new int[SIZE]; // stamp, hex is a target of nearest()
+        private final int[] seen = new int[SIZE];   // stamp, hex reached in this search
+        private final int[] closed = new int[SIZE]; // stamp, hex expanded in this search
+        private final int[] heap_pos = new int[SIZE];
+        private final int[] heap = new int[SIZE];
+        private int heap_size;
+        private int generation;
+
+        private void newGeneration() {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                Arrays.fill(closed, 0);
+                Arrays.fill(target, 0);
+                generation = 1;
             }
+            heap_size = 0;
+        }
 
+        LinkedList<Hex> search(Hex[][] map, Hex source, Hex destination, int move_type) {
+            newGeneration();
+            int dest_idx = destination.getHexIdx();
+            int dest_x = destination.getX();
+            int dest_y = destination.getY();
+            int src_idx = source.getHexIdx();
+            seen[src_idx] = generation;
+            g_score[src_idx] = 0;
+            previous[src_idx] = -1;
+            f_score[src_idx] = hexDistance(source.getX(), source.getY(), dest_x, dest_y);
+            push(src_idx);
+            while (heap_size > 0) {
+                int idx = pop();
+                if (idx == dest_idx) {
+                    return getPath(map, idx);
+                }
+                closed[idx] = generation;
+                Hex[] neighbours = map[idx % C.PLANET_MAP_WIDTH][idx / C.PLANET_MAP_WIDTH].getNeighbours();
+                for (Hex hex : neighbours) {
+                    if (hex == null) {
+                        continue;
+                    }
+                    int n_idx = hex.getHexIdx();
+                    int cost = hex.getMoveCost(move_type);
+                    if (cost <= 0 || closed[n_idx] == generation) {
+                        continue;
+                    }
+                    int new_dist = g_score[idx] + cost;
+                    if (seen[n_idx] != generation) {
+                        seen[n_idx] = generation;
+                        g_score[n_idx] = new_dist;
+                        previous[n_idx] = idx;
+                        f_score[n_idx] = new_dist + hexDistance(hex.getX(), hex.getY(), dest_x, dest_y);
+                        push(n_idx);
+                    } else if (new_dist < g_score[n_idx]) {
+                        f_score[n_idx] -= g_score[n_idx] - new_dist;
+                        g_score[n_idx] = new_dist;
+                        previous[n_idx] = idx;
+                        siftUp(heap_pos[n_idx]);
+                    }
+                }
+            }
+            System.out.println("No path");
+            return null;
         }
-        Hex h = null;
-        while (!queue.isEmpty()) {
-            h = queue.poll();
-            if (h.getMinDist() == Integer.MAX_VALUE) {
-                System.out.println("No path");
-                return null;
 
+        Nearest nearest(Hex[][] map, List<Hex> sources, Collection<Hex> targets, int move_type) {
+            newGeneration();
+            for (Hex hex : targets) {
+                target[hex.getHexIdx()] = generation;
             }
-            h.setVisited(true);
-//            path.add(h);
-//           System.out.println("XXX");
-            if (h.equals(destination)) {
-                //System.out.println("time = " + (System.currentTimeMillis() - time));
-                return getPath(h);
+            int count = 0;
+            for (Hex hex : sources) {
+                int idx = hex.getHexIdx();
+                if (seen[idx] != generation) {
+                    seen[idx] = generation;
+                    g_score[idx] = 0;
+                    f_score[idx] = 0;
+                    origin[idx] = count;
+                    push(idx);
+                }
+                count++;
             }
-
-            Hex[] neighbours = h.getNeighbours();
-            for (int i = 0; i < neighbours.length; i++) {
-                Hex hex = neighbours[i];
-//                System.out.println("i = " + i);
-                if (hex != null && !hex.isVisited()) {
-                    if (hex.getMoveCost(move_type) > 0) {
-                        int new_dist = h.getMinDist() + hex.getMoveCost(move_type);
-                        if (hex.getMinDist() > new_dist) {
-                            queue.remove(hex);
-                            hex.setMinDist(new_dist);
-                            queue.add(hex);
-                            hex.setPrevious(h);
-                        }
+            while (heap_size > 0) {
+                int idx = pop();
+                if (target[idx] == generation) {
+                    return new Nearest(origin[idx], map[idx % C.PLANET_MAP_WIDTH][idx / C.PLANET_MAP_WIDTH], g_score[idx]);
+                }
+                closed[idx] = generation;
+                Hex[] neighbours = map[idx % C.PLANET_MAP_WIDTH][idx / C.PLANET_MAP_WIDTH].getNeighbours();
+                for (Hex hex : neighbours) {
+                    if (hex == null) {
+                        continue;
+                    }
+                    int n_idx = hex.getHexIdx();
+                    int cost = hex.getMoveCost(move_type);
+                    if (cost <= 0 && target[n_idx] == generation) {
+                        cost = 1;
+                    }
+                    if (cost <= 0 || closed[n_idx] == generation) {
+                        continue;
+                    }
+                    int new_dist = g_score[idx] + cost;
+                    if (seen[n_idx] != generation) {
+                        seen[n_idx] = generation;
+                        g_score[n_idx] = new_dist;
+                        f_score[n_idx] = new_dist;
+                        origin[n_idx] = origin[idx];
+                        push(n_idx);
+                    } else if (new_dist < g_score[n_idx]) {
+                        g_score[n_idx] = new_dist;
+                        f_score[n_idx] = new_dist;
+                        origin[n_idx] = origin[idx];
+                        siftUp(heap_pos[n_idx]);
                     }
                 }
+            }
+            return null;
+        }
+
+        private LinkedList<Hex> getPath(Hex[][] map, int idx) {
+            LinkedList<Hex> rv = new LinkedList<>();
+            while (idx >= 0) {
+                rv.addFirst(map[idx % C.PLANET_MAP_WIDTH][idx / C.PLANET_MAP_WIDTH]);
+                idx = previous[idx];
+            }
+            return rv;
+        }
+
+        private void push(int idx) {
+            heap[heap_size] = idx;
+            heap_pos[idx] = heap_size;
+            siftUp(heap_size++);
+        }
 
+        private int pop() {
+            int top = heap[0];
+            heap_size--;
+            if (heap_size > 0) {
+                heap[0] = heap[heap_size];
+                heap_pos[heap[0]] = 0;
+                siftDown(0);
             }
+            return top;
+        }
 
+        private void siftUp(int pos) {
+            int idx = heap[pos];
+            while (pos > 0) {
+                int parent = (pos - 1) >> 1;
+                if (f_score[heap[parent]] <= f_score[idx]) {
+                    break;
+                }
+                heap[pos] = heap[parent];
+                heap_pos[heap[pos]] = pos;
+                pos = parent;
+            }
+            heap[pos] = idx;
+            heap_pos[idx] = pos;
         }
 
-        return getPath(h);
+        private void siftDown(int pos) {
+            int idx = heap[pos];
+            int half = heap_size >> 1;
+            while (pos < half) {
+                int child = 2 * pos + 1;
+                if (child + 1 < heap_size && f_score[heap[child + 1]] < f_score[heap[child]]) {
+                    child++;
+                }
+                if (f_score[idx] <= f_score[heap[child]]) {
+                    break;
+                }
+                heap[pos] = heap[child];
+                heap_pos[heap[pos]] = pos;
+                pos = child;
+            }
+            heap[pos] = idx;
+            heap_pos[idx] = pos;
+        }
     }
 
     public static LinkedList<Hex> getPath(Hex h) {
@@ -164,81 +373,33 @@ public class PathFind {
             System.out.println("path = " + path);
             return;
         }
+        Hex prev = null;
         for (Hex hex : path) {
-            Hex prev = hex.getPrevious();
             System.out.print("Path(x,y): " + hex.getX() + ", " + hex.getY() + " Previous(x,y): ");
             if (prev != null) {
                 System.out.println(prev.getX() + ", " + prev.getY());
             } else {
                 System.out.println("null");
             }
+            prev = hex;
         }
     }
 
+    /**
+     * Set Hex move costs on planet_grid for a stack of stack_size units of
+     * owner moving to destination. Terrain costs come from the planet's
+     * MoveCostCache, only occupied hexes are recalculated.
+     *
+     * @param planet_grid
+     * @param terr_cost
+     * @param tile_set
+     * @param stack_size
+     * @param owner
+     * @param prev_owner
+     * @param destination
+     */
     public static void setMoveCosts(PlanetGrid planet_grid, double[][][] terr_cost, int tile_set, int stack_size, int owner, int prev_owner, Hex destination) {
-
-//        printMoveCost(terr_cost);
-        Hex[][] hex_array = planet_grid.getMapArray();
-        double move_cost = 1;
-        for (int i = 0; i < hex_array.length; i++) {
-            for (int j = 0; j < hex_array[i].length; j++) {
-                boolean[] terr_types = hex_array[i][j].getTerrain();
-
-                for (int l = 0; l < C.MoveType.values().length; l++) {
-
-                    move_cost = 1;
-
-                    for (int k = 0; k < terr_types.length; k++) {
-                        if (terr_types[k] == true) {
-                            move_cost *= terr_cost[k][tile_set][l];
-//                        System.out.println("Move_cost: " + move_cost);
-                        }
-
-                    }
-
-                    Hex current_hex = hex_array[i][j];
-                    //if own city (and not loaned) move_cost == 1 if enemy city move_cost = 0
-                    //except when destination hex
-                    Structure struct = hex_array[i][j].getStructure();
-                    if (struct != null) {
-                        if (struct.prev_owner == prev_owner || ((struct.owner != owner) && current_hex.equals(destination))) {
-                            move_cost = 1;
-                        } else {
-                            move_cost = 0;
-                        }
-                    }
-
-                    //if enemy units (except when destination hex) or would be 
-                    // more than 20 own units move_cost = 0
-                    List<Unit> stack = hex_array[i][j].getStack();
-                    if (Util.stackSize(stack) > 0) {
-                        if (stack.get(0).prev_owner != prev_owner) {
-                            if (stack.get(0).owner == owner || !current_hex.equals(destination)) {
-                                move_cost = 0;
-                            }
-                        } else if (Util.stackSize(stack) + stack_size > 20) {
-                            // FIXME ? with this, if movement stops due to unspotted units, we may end with |stack| > 20
-                            if (!current_hex.equals(destination)) {
-                                move_cost = 0;
-                            }
-                        }
-                    }
-
-                    int result = 0;
-                    if (move_cost == 0) {
-                        result = 0;
-                    } else {
-                        result = (int) Math.ceil(move_cost);
-                        if (result == 0) {
-                            result = 1;
-                        }
-                    }
-                    hex_array[i][j].setMoveCost(result, l);
-                }
-            }
-
-        }
-
+        planet_grid.getMoveCostCache(terr_cost, tile_set).apply(planet_grid.getMapArray(), stack_size, owner, prev_owner, destination);
     }
 
     /**
@@ -312,7 +473,7 @@ public class PathFind {
             }
 
         }
-
+        planet_grid.resetMoveCostCache();
     }
 
     public static void printMoveCost(double[][][] terr_cost) {
@@ -344,11 +505,17 @@ public class PathFind {
         UnitType[][] unit_types = game.getUnitTypes();
         LinkedList<Hex> path = null;
         double min_max_path_cost = Double.POSITIVE_INFINITY;
+        // units with the same move type would yield the same path, search once per move type
+        boolean[] searched = new boolean[C.MoveType.values().length];
         for (ListIterator<Unit> it = selected.listIterator(); it.hasNext();) {
             Unit e = it.next();
             int unit_type = e.type;
             int t_lvl = e.t_lvl;
             C.MoveType move_type = unit_types[unit_type][t_lvl].move_type;
+            if (searched[move_type.ordinal()]) {
+                continue;
+            }
+            searched[move_type.ordinal()] = true;
             LinkedList<Hex> tmp_path = PathFind.shortestPath(planet_grid, source, destination, move_type.ordinal());
             if (tmp_path == null) {
                 continue;
@@ -28,62 +28,61 @@
 package util;
 
 import galaxyreader.Unit;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Iterator to go through a stack. Will iterate through cargo. Next returns null
  * if there are no more elements.
+ * <p>
+ * Walks the stack and cargo lists by index and allocates nothing, so a single
+ * StackIterator may be kept and reset() for each stack in per hex loops. The
+ * stack must not be modified during iteration.
  *
  * @author joulupunikki
  */
 public class StackIterator {
 
-    private boolean start;
-    private boolean is_cargo_listing;
-    private Iterator<Unit> iterator;
-    private Iterator<Unit> cargo_it;
-    private Unit next;
+    private List<Unit> stack;
+    // index in stack of the current unit or carrier of the current cargo
+    private int idx;
+    // index in carrier cargo of the next cargo unit, -1 if carrier is next
+    private int cargo_idx;
+
+    public StackIterator() {
+        stack = Collections.emptyList();
+    }
 
     public StackIterator(List<Unit> stack) {
-        is_cargo_listing = false;
-        iterator = stack.listIterator();
-        cargo_it = null;
-        start = true;
+        reset(stack);
     }
 
-    public Unit next() {
+    /**
+     * Restart iteration on stack.
+     *
+     * @param stack
+     * @return this
+     */
+    public StackIterator reset(List<Unit> stack) {
+        this.stack = stack;
+        idx = 0;
+        cargo_idx = -1;
+        return this;
+    }
 
-        if (start) {
-            if (iterator.hasNext()) {
-                next = iterator.next();
-            } else {
-                next = null;
+    public Unit next() {
+        while (idx < stack.size()) {
+            Unit carrier = stack.get(idx);
+            if (cargo_idx < 0) {
+                cargo_idx = 0;
+                return carrier;
             }
-            start = false;
-        } else if (next != null) {
-
-            if (is_cargo_listing) {
-                next = cargo_it.next();
-                if (!cargo_it.hasNext()) {
-                    cargo_it = null;
-                    is_cargo_listing = false;
-                }
-            } else if (next.cargo_list.isEmpty()) {
-                if (iterator.hasNext()) {
-                    next = iterator.next();
-                } else {
-                    next = null;
-                }
-            } else {
-                cargo_it = next.cargo_list.listIterator();
-                next = cargo_it.next();
-                if (cargo_it.hasNext()) {
-                    is_cargo_listing = true;
-                }
+            if (cargo_idx < carrier.cargo_list.size()) {
+                return carrier.cargo_list.get(cargo_idx++);
             }
+            idx++;
+            cargo_idx = -1;
         }
-        return next;
-
+        return null;
     }
 }
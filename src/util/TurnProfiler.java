@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package util;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Time spent in the phases of turn processing and counts of expensive
+ * operations. Each Game has one, which it binds to the thread running
+ * endTurn() and beginGame(). Code without a reference to the game, like
+ * PathFind, reports through the static methods, which do nothing on threads
+ * with no profiler bound. Measuring a span costs two System.nanoTime() calls
+ * so profiling is always on, only writing the results is optional.
+ * <p>
+ * Results are collected per faction turn, from the end of the previous
+ * faction turn to the end of the AI turn, if any. If a CSV file was given
+ * one row per faction turn is written to it: year, faction, span times in
+ * microseconds and counts.
+ *
+ * @author joulupunikki
+ */
+public class TurnProfiler {
+
+    private static final Logger logger = LogManager.getLogger(TurnProfiler.class);
+    private static final ThreadLocal<TurnProfiler> current = new ThreadLocal<>();
+
+    /**
+     * Timed phases of Game.endTurn() and of AI turns.
+     */
+    public enum Span {
+        HOUSEKEEPING,
+        ECONOMY,
+        RESEARCH,
+        BUILD,
+        RESET_UNITS,
+        SPOT_RANGE,
+        CARGO_PODS,
+        AI,
+        AI_FIND_ASSETS,
+        AI_CONQUER_CONTINENTS,
+        AI_TASK_FORCE_SCOUTS,
+        AI_MOVE_TASK_FORCES
+    }
+
+    /**
+     * Counted operations.
+     */
+    public enum Count {
+        PATH_SEARCHES,
+        BATTLES,
+        SPOT_UPDATES
+    }
+
+    private final long[] nanos = new long[Span.values().length];
+    private final long[] counts = new long[Count.values().length];
+    private final long[] total_nanos = new long[Span.values().length];
+    private final long[] total_counts = new long[Count.values().length];
+    private final CSVPrinter csv;
+
+    private TurnProfiler(CSVPrinter csv) {
+        this.csv = csv;
+    }
+
+    /**
+     * Create a profiler which writes per faction turn rows to a CSV file.
+     * If file_name is null, or the file cannot be created, results are only
+     * kept in memory.
+     *
+     * @param file_name
+     * @return
+     */
+    public static TurnProfiler create(String file_name) {
+        if (file_name == null) {
+            return new TurnProfiler(null);
+        }
+        List<String> header = new ArrayList<>();
+        header.add("year");
+        header.add("faction");
+        for (Span span : Span.values()) {
+            header.add(span.name().toLowerCase() + "_us");
+        }
+        for (Count count : Count.values()) {
+            header.add(count.name().toLowerCase());
+        }
+        try {
+            return new TurnProfiler(new CSVPrinter(new BufferedWriter(new FileWriter(file_name, false)),
+                    CSVFormat.DEFAULT.withHeader(header.toArray(new String[0]))));
+        } catch (IOException ex) {
+            logger.warn("Failed to open profile file " + file_name + ": " + ex);
+            return new TurnProfiler(null);
+        }
+    }
+
+    /**
+     * Make this the profiler of the calling thread.
+     */
+    public void bind() {
+        current.set(this);
+    }
+
+    public static void unbind() {
+        current.remove();
+    }
+
+    /**
+     * @return start time of a span, pass to end()
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Add time since start to span of the profiler of the calling thread.
+     *
+     * @param span
+     * @param start
+     */
+    public static void end(Span span, long start) {
+        TurnProfiler p = current.get();
+        if (p != null) {
+            p.nanos[span.ordinal()] += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Increment count of the profiler of the calling thread.
+     *
+     * @param count
+     */
+    public static void count(Count count) {
+        TurnProfiler p = current.get();
+        if (p != null) {
+            p.counts[count.ordinal()]++;
+        }
+    }
+
+    /**
+     * End collection for a faction turn, write the CSV row and start a new
+     * one.
+     *
+     * @param year
+     * @param faction
+     */
+    public void endFactionTurn(int year, int faction) {
+        if (csv != null) {
+            try {
+                csv.print(year);
+                csv.print(faction);
+                for (long n : nanos) {
+                    csv.print(n / 1000);
+                }
+                for (long c : counts) {
+                    csv.print(c);
+                }
+                csv.println();
+                csv.flush();
+            } catch (IOException ex) {
+                logger.warn("Failed to write profile: " + ex);
+            }
+        }
+        for (int i = 0; i < nanos.length; i++) {
+            total_nanos[i] += nanos[i];
+            nanos[i] = 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            total_counts[i] += counts[i];
+            counts[i] = 0;
+        }
+    }
+
+    /**
+     * @param span
+     * @return nanoseconds spent in span in completed faction turns
+     */
+    public long getTotalNanos(Span span) {
+        return total_nanos[span.ordinal()];
+    }
+
+    /**
+     * @param count
+     * @return count in completed faction turns
+     */
+    public long getTotalCount(Count count) {
+        return total_counts[count.ordinal()];
+    }
+
+    public void close() {
+        if (csv != null) {
+            try {
+                csv.close();
+            } catch (IOException ex) {
+                logger.warn("Failed to close profile: " + ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ *
+ *  Disclaimer of Warranties and Limitation of Liability.
+ *
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ *
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ *
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ *
+ */
+package util;
+
+import galaxyreader.Unit;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Array backed list of units, used for hex stacks, space stacks, cargo and
+ * battle lists. Stacks hold at most C.STACK_SIZE units so the backing array is
+ * allocated once at that size on the first add and after that adding, removing
+ * and indexed access do not allocate. The array will grow if more units are
+ * added, so temporary lists that exceed the stack limit still work.
+ * <p>
+ * Units are compared by identity, as Unit does not override equals().
+ *
+ * @author joulupunikki
+ */
+public class UnitStack extends AbstractList<Unit> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Unit[] EMPTY = {};
+    private Unit[] units;
+    private int size;
+
+    public UnitStack() {
+        units = EMPTY;
+    }
+
+    public UnitStack(Collection<Unit> units) {
+        this.units = EMPTY;
+        addAll(units);
+    }
+
+    /**
+     * Returns stack if it is a UnitStack, otherwise a UnitStack with the units
+     * of stack. Used to convert lists in saves made before UnitStack.
+     *
+     * @param stack
+     * @return
+     */
+    public static UnitStack of(List<Unit> stack) {
+        if (stack instanceof UnitStack) {
+            return (UnitStack) stack;
+        }
+        return new UnitStack(stack);
+    }
+
+    /**
+     * Number of units in stack counting cargo, that is the amount which must
+     * not exceed C.STACK_SIZE.
+     *
+     * @return
+     */
+    public int unitCount() {
+        int rv = size;
+        for (int i = 0; i < size; i++) {
+            rv += units[i].cargo_list.size();
+        }
+        return rv;
+    }
+
+    /**
+     * Number of units in stack counting cargo, for any list of units.
+     *
+     * @param stack
+     * @return
+     */
+    public static int unitCount(List<Unit> stack) {
+        if (stack instanceof UnitStack) {
+            return ((UnitStack) stack).unitCount();
+        }
+        int rv = 0;
+        for (Unit unit : stack) {
+            rv++;
+            rv += unit.cargo_list.size();
+        }
+        return rv;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > units.length) {
+            int new_capacity = Math.max(C.STACK_SIZE, units.length * 2);
+            units = Arrays.copyOf(units, Math.max(capacity, new_capacity));
+        }
+    }
+
+    private void checkIndex(int index, int limit) {
+        if (index < 0 || index >= limit) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    @Override
+    public Unit get(int index) {
+        checkIndex(index, size);
+        return units[index];
+    }
+
+    @Override
+    public Unit set(int index, Unit unit) {
+        checkIndex(index, size);
+        Unit old = units[index];
+        units[index] = unit;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(Unit unit) {
+        modCount++;
+        ensureCapacity(size + 1);
+        units[size++] = unit;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Unit unit) {
+        checkIndex(index, size + 1);
+        modCount++;
+        ensureCapacity(size + 1);
+        System.arraycopy(units, index, units, index + 1, size - index);
+        units[index] = unit;
+        size++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Unit> c) {
+        int n = c.size();
+        if (n == 0) {
+            return false;
+        }
+        modCount++;
+        ensureCapacity(size + n);
+        if (c instanceof UnitStack) {
+            System.arraycopy(((UnitStack) c).units, 0, units, size, n);
+            size += n;
+        } else {
+            for (Unit unit : c) {
+                units[size++] = unit;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Unit remove(int index) {
+        checkIndex(index, size);
+        modCount++;
+        Unit old = units[index];
+        System.arraycopy(units, index + 1, units, index, size - index - 1);
+        units[--size] = null;
+        return old;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        for (int i = 0; i < size; i++) {
+            if (units[i] == o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (units[i] == o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        remove(index);
+        return true;
+    }
+
+    /**
+     * Removes all units in c, compacting the array in one pass.
+     */
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (!c.contains(units[i])) {
+                units[j++] = units[i];
+            }
+        }
+        if (j == size) {
+            return false;
+        }
+        modCount++;
+        Arrays.fill(units, j, size, null);
+        size = j;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (size > 0) {
+            modCount++;
+            Arrays.fill(units, 0, size, null);
+            size = 0;
+        }
+    }
+}
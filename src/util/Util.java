@@ -730,12 +730,7 @@ public class Util {
     }
 
     public static int stackSize(List<Unit> stack) {
-        int rv = 0;
-        for (Unit unit : stack) {
-            rv++;
-            rv += unit.cargo_list.size();
-        }
-        return rv;
+        return UnitStack.unitCount(stack);
     }
 
     public static void drawBlip(Graphics g, int x, int y, int side) {
@@ -1316,19 +1311,23 @@ public class Util {
 
         BufferedImage bi = null;
         int image_size = height * width;
+        int w = width;
 
-        byte[] image_data = readFile(file_name, -1, ByteOrder.BIG_ENDIAN);
+        int[] i_data_array = AssetCache.getArray("pcx:" + width + "x" + height + (double_size_window ? ":2x:" : ":") + file_name,
+                new String[]{file_name}, () -> {
+                    byte[] image_data = readFile(file_name, -1, ByteOrder.BIG_ENDIAN);
 
-        int[] i_data_array = UtilG.pcxDecode(image_data, image_size);
+                    int[] data = UtilG.pcxDecode(image_data, image_size);
+                    if (double_size_window) {
+                        data = scale2XImage(data, image_size, w);
+                    }
+                    return new int[][]{data};
+                });
 
         // if double size main window double image dimensions
         if (double_size_window) {
-
-            i_data_array = scale2XImage(i_data_array, image_size, width);
-
             height = 2 * height;
             width = 2 * width;
-
         }
 
         // create ICM based on pallette data, BGR-format
@@ -1545,6 +1544,11 @@ public class Util {
     }
 
     public static int[][] loadSquares(String file_name, int nr, int image_size) {
+        return AssetCache.get("squares:" + nr + "x" + image_size + ":" + file_name,
+                new String[]{file_name}, () -> decodeSquares(file_name, nr, image_size));
+    }
+
+    private static int[][] decodeSquares(String file_name, int nr, int image_size) {
         int[][] squares = null;
 
         Path path = FileSystems.getDefault().getPath(file_name);
@@ -1580,6 +1584,11 @@ public class Util {
     }
 
     public static int[][] loadHexTiles(String file_name, int length) {
+        return AssetCache.get("hex_tiles:" + length + ":" + file_name,
+                new String[]{file_name}, () -> decodeHexTiles(file_name, length));
+    }
+
+    private static int[][] decodeHexTiles(String file_name, int length) {
         int[][] hex_tiles = null;
 
         Path path = FileSystems.getDefault().getPath(file_name);
@@ -2149,14 +2158,20 @@ public class Util {
     }
 
     public static void unSelectAll(List<Unit> stack) {
-        for (Unit unit : xS(stack)) {
+        for (Unit unit : stack) {
             unit.setSelected(false);
+            for (Unit cargo : unit.cargo_list) {
+                cargo.setSelected(false);
+            }
         }
     }
 
     public static void selectAll(List<Unit> stack) {
-        for (Unit unit : xS(stack)) {
+        for (Unit unit : stack) {
             unit.setSelected(true);
+            for (Unit cargo : unit.cargo_list) {
+                cargo.setSelected(true);
+            }
         }
     }
 
@@ -2248,10 +2263,15 @@ public class Util {
      * @return
      */
     public static boolean anyCargoPods(List<Unit> stack) {
-        for (Unit u : Util.xS(stack)) {
+        for (Unit u : stack) {
             if (u.type == C.CARGO_UNIT_TYPE) {
                 return true;
             }
+            for (Unit cargo : u.cargo_list) {
+                if (cargo.type == C.CARGO_UNIT_TYPE) {
+                    return true;
+                }
+            }
         }
         return false;
     }
@@ -2263,10 +2283,15 @@ public class Util {
      * @return
      */
     public static boolean anyCombat(List<Unit> stack) {
-        for (Unit u : Util.xS(stack)) {
+        for (Unit u : stack) {
             if (u.type_data.non_combat == 0) {
                 return true;
             }
+            for (Unit cargo : u.cargo_list) {
+                if (cargo.type_data.non_combat == 0) {
+                    return true;
+                }
+            }
         }
         return false;
     }
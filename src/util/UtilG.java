@@ -1032,21 +1032,29 @@ public class UtilG {
 
         BufferedImage bi = null;
         int image_size = height * width;
+        int w = width;
+        int h = height;
 
-        byte[] image_data = readFile(file_name, -1, ByteOrder.BIG_ENDIAN);
+        int[] i_data_array = AssetCache.getArray("flc:" + width + "x" + height + (double_size_window ? ":2x:" : ":") + file_name,
+                new String[]{file_name}, () -> {
+                    byte[] image_data = readFile(file_name, -1, ByteOrder.BIG_ENDIAN);
 
-        int[] i_data_array = UtilG.flcDecodeFirst(image_data, width, height);
+                    int[] data = UtilG.flcDecodeFirst(image_data, w, h);
+                    if (data == null) {
+                        return null;
+                    }
+                    if (double_size_window) {
+                        data = scale2XImage(data, image_size, w);
+                    }
+                    return new int[][]{data};
+                });
         if (i_data_array == null) {
             return null;
         }
         // if double size main window double image dimensions
         if (double_size_window) {
-
-            i_data_array = scale2XImage(i_data_array, image_size, width);
-
             height = 2 * height;
             width = 2 * width;
-
         }
 
         // create ICM based on pallette data, BGR-format
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 joulupunikki joulupunikki@gmail.communist.invalid.
+ * 
+ *  Disclaimer of Warranties and Limitation of Liability.
+ * 
+ *     The creators and distributors offer this software as-is and
+ *     as-available, and make no representations or warranties of any
+ *     kind concerning this software, whether express, implied, statutory,
+ *     or other. This includes, without limitation, warranties of title,
+ *     merchantability, fitness for a particular purpose, non-infringement,
+ *     absence of latent or other defects, accuracy, or the presence or
+ *     absence of errors, whether or not known or discoverable.
+ * 
+ *     To the extent possible, in no event will the creators or distributors
+ *     be liable on any legal theory (including, without limitation,
+ *     negligence) or otherwise for any direct, special, indirect,
+ *     incidental, consequential, punitive, exemplary, or other losses,
+ *     costs, expenses, or damages arising out of the use of this software,
+ *     even if the creators or distributors have been advised of the
+ *     possibility of such losses, costs, expenses, or damages.
+ * 
+ *     The disclaimer of warranties and limitation of liability provided
+ *     above shall be interpreted in a manner that, to the extent possible,
+ *     most closely approximates an absolute disclaimer and waiver of
+ *     all liability.
+ * 
+ */
+package game;
+
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+import util.C;
+
+/**
+ * Checks Visibility bitsets against the per hex boolean[] visibility they
+ * replaced.
+ *
+ * @author joulupunikki joulupunikki@gmail.communist.invalid
+ */
+public class VisibilityTest {
+
+    private static final int SIZE = C.PLANET_MAP_WIDTH * C.PLANET_MAP_COLUMNS;
+
+    public VisibilityTest() {
+    }
+
+    @Test
+    public void testAgainstBooleans() {
+        Visibility v = new Visibility();
+        boolean[][] visible = new boolean[SIZE][C.NR_FACTIONS];
+        Random random = new Random(1);
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 2000; i++) {
+                int hex_idx = random.nextInt(SIZE);
+                int faction = random.nextInt(C.NR_FACTIONS);
+                v.spot(faction, hex_idx);
+                visible[hex_idx][faction] = true;
+            }
+            int all = random.nextInt(C.NR_FACTIONS);
+            v.spotAll(all);
+            for (boolean[] hex : visible) {
+                hex[all] = true;
+            }
+            assertSame(visible, v);
+            v.reset();
+            visible = new boolean[SIZE][C.NR_FACTIONS];
+            assertSame(visible, v);
+        }
+    }
+
+    @Test
+    public void testHexesShareGridVisibility() {
+        PlanetGrid grid = new PlanetGrid();
+        Hex first = grid.getHex(0, 0);
+        Hex last = grid.getHex(C.PLANET_MAP_WIDTH - 1, C.PLANET_MAP_COLUMNS - 1);
+        last.spot(C.NEUTRAL);
+        Assert.assertTrue(last.isSpotted(C.NEUTRAL));
+        Assert.assertFalse(first.isSpotted(C.NEUTRAL));
+        Assert.assertFalse(last.isSpotted(C.HOUSE1));
+        first.omniscience(C.HOUSE1);
+        Assert.assertTrue(first.isSpotted(C.HOUSE1));
+        Assert.assertFalse(grid.getHex(1, 0).isSpotted(C.HOUSE1));
+    }
+
+    private static void assertSame(boolean[][] visible, Visibility v) {
+        for (int hex_idx = 0; hex_idx < SIZE; hex_idx++) {
+            for (int f = 0; f < C.NR_FACTIONS; f++) {
+                Assert.assertEquals("hex " + hex_idx + " faction " + f, visible[hex_idx][f], v.isSpotted(f, hex_idx));
+            }
+        }
+        for (int f = 0; f < C.NR_FACTIONS; f++) {
+            int expected = 0;
+            for (int i = v.nextSpotted(f, 0); i >= 0; i = v.nextSpotted(f, i + 1)) {
+                while (!visible[expected][f]) {
+                    expected++;
+                }
+                Assert.assertEquals("faction " + f, expected++, i);
+            }
+            while (expected < SIZE) {
+                Assert.assertFalse("faction " + f + " hex " + expected, visible[expected++][f]);
+            }
+        }
+    }
+}
@@ -43,6 +43,9 @@ import org.junit.Test;
  */
 public class StackIteratorTest {
 
+    // reused across all assertStack() calls
+    private final StackIterator reused = new StackIterator();
+
     public StackIteratorTest() {
     }
 
@@ -135,6 +138,12 @@ public class StackIteratorTest {
         }
         System.out.println("");
         Assert.assertNull(si.next());
+        reused.reset(s);
+        for (int j = 0; j < size; j++) {
+            Assert.assertEquals(reused.next().p_idx, j);
+        }
+        Assert.assertNull(reused.next());
+        Assert.assertNull(reused.next());
     }
 
     private void clearCargo(Unit[] u) {